@@ -0,0 +1,79 @@
+package com.example.auth;
+
+import com.example.auth.config.JwtKeyProperties;
+import com.example.auth.config.JwtKeys;
+import com.example.auth.config.JwtUtil;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token validations per second: a parser built per call and every token verified (how JwtUtil
+ * used to validate), one shared parser, and JwtUtil's cache of verified claims.
+ *
+ * ./gradlew jmh -PjmhArgs="JwtValidationBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class JwtValidationBenchmark {
+
+    private SecretKey key;
+    private JwtParser parser;
+    private String token;
+
+    private JwtUtil jwtUtil;
+    private String cachedToken;
+
+    @Setup
+    public void setUp() {
+        key = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+        parser = Jwts.parserBuilder().setSigningKey(key).build();
+        token = Jwts.builder()
+                .setSubject("user@example.com")
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)))
+                .signWith(key)
+                .compact();
+
+        jwtUtil = new JwtUtil(new JwtKeys(new JwtKeyProperties()), 100_000);
+        cachedToken = jwtUtil.generateToken("user@example.com");
+        jwtUtil.getClaims(cachedToken);
+    }
+
+    @Benchmark
+    public Claims parserPerCall() {
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims sharedParser() {
+        return parser.parseClaimsJws(token).getBody();
+    }
+
+    @Benchmark
+    public Claims cachedClaims() {
+        return jwtUtil.getClaims(cachedToken);
+    }
+}
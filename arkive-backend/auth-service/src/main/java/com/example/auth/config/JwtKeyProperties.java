@@ -0,0 +1,38 @@
+package com.example.auth.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keys tokens are signed and verified with. Either a single HS256 secret (JWT_SECRET), or a
+ * list of keys identified by the kid header of the tokens they signed, of which one signs new
+ * tokens and the rest are only accepted for verification while they rotate out.
+ */
+@Data
+@ConfigurationProperties(prefix = "jwt")
+public class JwtKeyProperties {
+
+    // Id of the key that signs new tokens; may be left out when only one key is configured
+    private String signingKeyId;
+
+    // HS256 secret of the single key (id "default") used when no keys are listed
+    private String secret;
+
+    private List<Key> keys = new ArrayList<>();
+
+    @Data
+    public static class Key {
+        private String id;
+        // HS256 or ES256
+        private String algorithm = "HS256";
+        // HS256: at least 32 bytes
+        private String secret;
+        // ES256: PKCS#8 PEM of a P-256 key; only needed for the signing key
+        private String privateKey;
+        // ES256: X.509 PEM
+        private String publicKey;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.auth.config;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.SignatureException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyFactory;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The configured signing keys. New tokens are signed with the signing key and name it in their
+ * kid header; a token is verified with the key its kid names, so tokens signed with a key that
+ * is rotating out stay valid for as long as that key remains configured.
+ */
+@Component
+@EnableConfigurationProperties(JwtKeyProperties.class)
+@Slf4j
+public class JwtKeys {
+
+    static final String DEFAULT_KEY_ID = "default";
+    private static final String EPHEMERAL_KEY_ID = "ephemeral";
+
+    private final Map<String, ConfiguredKey> keysById = new LinkedHashMap<>();
+    private final ConfiguredKey signingKey;
+
+    public JwtKeys(JwtKeyProperties properties) {
+        List<JwtKeyProperties.Key> configured = properties.getKeys();
+        if (configured.isEmpty() && StringUtils.hasText(properties.getSecret())) {
+            JwtKeyProperties.Key key = new JwtKeyProperties.Key();
+            key.setId(DEFAULT_KEY_ID);
+            key.setSecret(properties.getSecret());
+            configured = List.of(key);
+        }
+
+        if (configured.isEmpty()) {
+            log.warn("No JWT signing key is configured (jwt.secret or jwt.keys); tokens are signed with a random key "
+                    + "and become invalid on restart and on other replicas");
+            SignatureAlgorithm algorithm = SignatureAlgorithm.HS256;
+            Key key = Keys.secretKeyFor(algorithm);
+            keysById.put(EPHEMERAL_KEY_ID, new ConfiguredKey(EPHEMERAL_KEY_ID, algorithm, key, key));
+        }
+        for (JwtKeyProperties.Key key : configured) {
+            ConfiguredKey loaded = load(key);
+            if (keysById.putIfAbsent(loaded.id, loaded) != null) {
+                throw new IllegalStateException("JWT key id " + loaded.id + " is configured twice");
+            }
+        }
+
+        String signingKeyId = properties.getSigningKeyId();
+        if (!StringUtils.hasText(signingKeyId)) {
+            if (keysById.size() > 1) {
+                throw new IllegalStateException("jwt.signing-key-id is required when several JWT keys are configured");
+            }
+            signingKeyId = keysById.keySet().iterator().next();
+        }
+        this.signingKey = keysById.get(signingKeyId);
+        if (signingKey == null || signingKey.signingKey == null) {
+            throw new IllegalStateException("JWT signing key " + signingKeyId + " is not configured with a secret or private key");
+        }
+    }
+
+    public String signingKeyId() {
+        return signingKey.id;
+    }
+
+    public SignatureAlgorithm signingAlgorithm() {
+        return signingKey.algorithm;
+    }
+
+    public Key signingKey() {
+        return signingKey.signingKey;
+    }
+
+    /**
+     * The key that verifies a token with the given header.
+     *
+     * @throws SignatureException If the kid names no configured key or the key has another algorithm
+     */
+    public Key verificationKey(JwsHeader<?> header) {
+        ConfiguredKey key = header.getKeyId() != null ? keysById.get(header.getKeyId()) : null;
+        if (key == null) {
+            throw new SignatureException("Unknown JWT key id " + header.getKeyId());
+        }
+        // Otherwise a token could pick a weaker algorithm than the key is meant for
+        if (!key.algorithm.getValue().equals(header.getAlgorithm())) {
+            throw new SignatureException("JWT key " + key.id + " does not sign with " + header.getAlgorithm());
+        }
+        return key.verificationKey;
+    }
+
+    /**
+     * The public keys as a JSON Web Key Set, which services can verify ES256 tokens with locally.
+     * HS256 secrets are never included.
+     */
+    public Map<String, Object> publicJwks() {
+        List<Map<String, Object>> jwks = new ArrayList<>();
+        for (ConfiguredKey key : keysById.values()) {
+            if (key.verificationKey instanceof ECPublicKey publicKey) {
+                Map<String, Object> jwk = new LinkedHashMap<>();
+                jwk.put("kty", "EC");
+                jwk.put("crv", "P-256");
+                jwk.put("kid", key.id);
+                jwk.put("use", "sig");
+                jwk.put("alg", key.algorithm.getValue());
+                jwk.put("x", coordinate(publicKey.getW().getAffineX()));
+                jwk.put("y", coordinate(publicKey.getW().getAffineY()));
+                jwks.add(jwk);
+            }
+        }
+        return Map.of("keys", jwks);
+    }
+
+    private static ConfiguredKey load(JwtKeyProperties.Key key) {
+        if (!StringUtils.hasText(key.getId())) {
+            throw new IllegalStateException("Every configured JWT key needs an id");
+        }
+        String algorithm = key.getAlgorithm();
+        if ("HS256".equals(algorithm)) {
+            if (!StringUtils.hasText(key.getSecret())) {
+                throw new IllegalStateException("JWT key " + key.getId() + " needs a secret");
+            }
+            Key secret = Keys.hmacShaKeyFor(key.getSecret().getBytes(StandardCharsets.UTF_8));
+            return new ConfiguredKey(key.getId(), SignatureAlgorithm.HS256, secret, secret);
+        }
+        if ("ES256".equals(algorithm)) {
+            if (!StringUtils.hasText(key.getPublicKey())) {
+                throw new IllegalStateException("JWT key " + key.getId() + " needs a public key");
+            }
+            try {
+                KeyFactory keyFactory = KeyFactory.getInstance("EC");
+                ECPublicKey publicKey = (ECPublicKey) keyFactory.generatePublic(new X509EncodedKeySpec(pem(key.getPublicKey())));
+                if (publicKey.getParams().getCurve().getField().getFieldSize() != 256) {
+                    throw new IllegalStateException("JWT key " + key.getId() + " is not on the P-256 curve ES256 needs");
+                }
+                Key privateKey = StringUtils.hasText(key.getPrivateKey())
+                        ? keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pem(key.getPrivateKey())))
+                        : null;
+                return new ConfiguredKey(key.getId(), SignatureAlgorithm.ES256, privateKey, publicKey);
+            } catch (GeneralSecurityException | IllegalArgumentException e) {
+                throw new IllegalStateException("JWT key " + key.getId() + " is not a valid EC key: " + e.getMessage(), e);
+            }
+        }
+        throw new IllegalStateException("JWT key " + key.getId() + " uses unsupported algorithm " + algorithm
+                + "; use HS256 or ES256");
+    }
+
+    // Accepts PEM with real or escaped line breaks, as secrets passed through env files often have
+    private static byte[] pem(String pem) {
+        String base64 = pem.replaceAll("-----[A-Z ]+-----", "")
+                .replace("\\n", "")
+                .replaceAll("\\s", "");
+        return Base64.getDecoder().decode(base64);
+    }
+
+    // Unsigned big-endian, padded to the 32 bytes of a P-256 coordinate
+    private static String coordinate(BigInteger value) {
+        byte[] bytes = value.toByteArray();
+        byte[] padded = new byte[32];
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, padded, 32 - length, length);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(padded);
+    }
+
+    private static final class ConfiguredKey {
+        private final String id;
+        private final SignatureAlgorithm algorithm;
+        // Null for keys that only verify
+        private final Key signingKey;
+        private final Key verificationKey;
+
+        private ConfiguredKey(String id, SignatureAlgorithm algorithm, Key signingKey, Key verificationKey) {
+            this.id = id;
+            this.algorithm = algorithm;
+            this.signingKey = signingKey;
+            this.verificationKey = verificationKey;
+        }
+    }
+}
@@ -1,81 +1,182 @@
 package com.example.auth.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.example.auth.dto.TokenIntrospection;
+import com.example.auth.service.TokenBlacklist;
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import javax.crypto.SecretKey;
+import java.security.Key;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 @Component
 public class JwtUtil {
 
-    private final SecretKey key = Keys.secretKeyFor(SignatureAlgorithm.HS256); // strong secret
+    private final JwtKeys keys;
+
+    // Immutable once built, so one instance verifies tokens for all threads
+    private final JwtParser parser;
+
+    // Claims of tokens whose signature was already verified, keyed by the token's SHA-256 and
+    // dropped when the token expires, so repeat validations skip the signature check and parsing
+    private final Cache<String, Claims> verifiedClaims;
 
     @Autowired
-    private RedisTemplate<String, String> redisTemplate;
+    private TokenBlacklist tokenBlacklist;
 
     private static final long EXPIRATION_MS = 7776000000L;
 
+    // How long claims of a token without an expiration are kept
+    private static final long UNBOUNDED_CLAIMS_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    public JwtUtil(JwtKeys keys, @Value("${jwt.claims-cache.max-size:100000}") long claimsCacheMaxSize) {
+        this.keys = keys;
+        // Each token is verified with the key its kid header names
+        this.parser = Jwts.parserBuilder()
+                .setSigningKeyResolver(new SigningKeyResolverAdapter() {
+                    @Override
+                    public Key resolveSigningKey(JwsHeader header, Claims claims) {
+                        return keys.verificationKey(header);
+                    }
+                })
+                .build();
+        this.verifiedClaims = Caffeine.newBuilder()
+                .maximumSize(claimsCacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String tokenHash, Claims claims, long currentTime) {
+                        Date expiration = claims.getExpiration();
+                        long remaining = expiration != null
+                                ? expiration.getTime() - System.currentTimeMillis()
+                                : UNBOUNDED_CLAIMS_TTL_MS;
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remaining));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String tokenHash, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     // Generate JWT Token
     public String generateToken(String username) {
         return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, keys.signingKeyId())
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_MS))
-                .signWith(key)
+                .signWith(keys.signingKey(), keys.signingAlgorithm())
                 .compact();
     }
 
     // Validate Token (check blacklist + parse)
     public boolean validate(String token) {
-        return parseToken(token) != null && !isTokenInvalidated(token);
+        if (token == null || token.isEmpty()) return false;
+
+        byte[] tokenDigest = TokenBlacklist.digest(token);
+        return getClaims(token, tokenDigest) != null && !tokenBlacklist.contains(tokenDigest);
     }
 
-    // Invalidate token using Redis with TTL
+    // Invalidate token until it expires
     public boolean invalidateToken(String token) {
-        if (isTokenInvalidated(token)) return false;
+        if (token == null || token.isEmpty()) return false;
+
+        byte[] tokenDigest = TokenBlacklist.digest(token);
+        if (tokenBlacklist.contains(tokenDigest)) return false;
 
         long ttl = getRemainingTokenTime(token);
         if (ttl > 0) {
-            redisTemplate.opsForValue().set(token, "blacklisted", ttl, TimeUnit.MILLISECONDS);
+            tokenBlacklist.add(tokenDigest, ttl);
             return true;
         }
         return false;
     }
 
-    // Check Redis for blacklisted token
-    private boolean isTokenInvalidated(String token) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(token));
+    // Verify a batch of tokens; the blacklist is checked for all of them in at most one Redis round trip
+    public List<TokenIntrospection> introspect(List<String> tokens) {
+        List<Claims> claims = new ArrayList<>(tokens.size());
+        List<byte[]> verifiedDigests = new ArrayList<>();
+        for (String token : tokens) {
+            if (token == null || token.isEmpty()) {
+                claims.add(null);
+                continue;
+            }
+            byte[] tokenDigest = TokenBlacklist.digest(token);
+            Claims tokenClaims = getClaims(token, tokenDigest);
+            claims.add(tokenClaims);
+            if (tokenClaims != null) {
+                verifiedDigests.add(tokenDigest);
+            }
+        }
+
+        // Only verified tokens are looked up; a forged token cannot be revoked
+        boolean[] revoked = tokenBlacklist.containsAll(verifiedDigests);
+        List<TokenIntrospection> results = new ArrayList<>(tokens.size());
+        int verified = 0;
+        for (Claims tokenClaims : claims) {
+            if (tokenClaims == null) {
+                results.add(new TokenIntrospection(false, null, null, false));
+                continue;
+            }
+            boolean tokenRevoked = revoked[verified++];
+            Date expiration = tokenClaims.getExpiration();
+            results.add(new TokenIntrospection(!tokenRevoked, tokenClaims.getSubject(),
+                    expiration != null ? expiration.getTime() / 1000 : null, tokenRevoked));
+        }
+        return results;
     }
 
     // Extract subject (email/username)
     public String extractSubject(String token) {
-        Jws<Claims> parsed = parseToken(token);
-        return (parsed != null) ? parsed.getBody().getSubject() : null;
+        Claims claims = getClaims(token);
+        return (claims != null) ? claims.getSubject() : null;
     }
 
-    // Parse the token (returns null if invalid or expired)
-    private Jws<Claims> parseToken(String token) {
+    // Verified claims of the token (null if invalid or expired); does not check the blacklist
+    public Claims getClaims(String token) {
+        if (token == null || token.isEmpty()) return null;
+
+        return getClaims(token, TokenBlacklist.digest(token));
+    }
+
+    private Claims getClaims(String token, byte[] tokenDigest) {
+        String tokenHash = HexFormat.of().formatHex(tokenDigest);
+        Claims claims = verifiedClaims.getIfPresent(tokenHash);
+        if (claims != null) return claims;
+
+        // Invalid tokens are not cached, so garbage tokens cannot crowd out valid ones
         try {
-            return Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token);
+            claims = parser.parseClaimsJws(token).getBody();
         } catch (JwtException | IllegalArgumentException e) {
             return null;
         }
+        verifiedClaims.put(tokenHash, claims);
+        return claims;
     }
 
     // Compute remaining validity time in ms
     private long getRemainingTokenTime(String token) {
-        Jws<Claims> parsed = parseToken(token);
-        if (parsed == null) return 0;
+        Claims claims = getClaims(token);
+        if (claims == null) return 0;
 
-        Date expiration = parsed.getBody().getExpiration();
+        Date expiration = claims.getExpiration();
         return expiration.getTime() - System.currentTimeMillis();
     }
 }
@@ -0,0 +1,12 @@
+package com.example.auth.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs background jobs such as the token blacklist filter sync.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,13 +1,18 @@
 package com.example.auth.controller;
 
+import com.example.auth.config.JwtKeys;
 import com.example.auth.config.JwtUtil;
+import com.example.auth.dto.IntrospectionRequest;
 import com.example.auth.dto.LoginResponse;
 import com.example.auth.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,6 +25,12 @@ public class AuthController {
    @Autowired
    private JwtUtil jwtUtil;
 
+   @Autowired
+   private JwtKeys jwtKeys;
+
+   @Value("${auth.introspect.max-batch-size:100}")
+   private int maxIntrospectBatchSize;
+
    // Handle Login
    @PostMapping("/login")
    public ResponseEntity<?> login(@RequestBody Map<String, String> userData) {
@@ -55,6 +66,35 @@ public class AuthController {
       return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
    }
 
+   // Verify tokens for the gateway and other services, one or many per call
+   @PostMapping("/introspect")
+   public ResponseEntity<?> introspect(@RequestBody IntrospectionRequest introspectionRequest) {
+      List<String> tokens = new ArrayList<>();
+      if (introspectionRequest.getToken() != null) {
+         tokens.add(introspectionRequest.getToken());
+      }
+      if (introspectionRequest.getTokens() != null) {
+         tokens.addAll(introspectionRequest.getTokens());
+      }
+      if (tokens.isEmpty()) {
+         return ResponseEntity.badRequest().body(Map.of(
+               "error", "token or tokens is required"));
+      }
+      if (tokens.size() > maxIntrospectBatchSize) {
+         return ResponseEntity.badRequest().body(Map.of(
+               "error", "At most " + maxIntrospectBatchSize + " tokens can be introspected per call"));
+      }
+
+      // Results are in the order the tokens were given
+      return ResponseEntity.ok(Map.of("results", jwtUtil.introspect(tokens)));
+   }
+
+   // Public keys of ES256 tokens, so other services can verify them without calling this one
+   @GetMapping("/jwks")
+   public Map<String, Object> jwks() {
+      return jwtKeys.publicJwks();
+   }
+
    // Home route
    @GetMapping("/")
    public String home() {
@@ -0,0 +1,16 @@
+package com.example.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class IntrospectionRequest {
+    // Either a single token or a batch
+    private String token;
+    private List<String> tokens;
+}
@@ -0,0 +1,17 @@
+package com.example.auth.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenIntrospection {
+    // Signed by this service, not expired and not revoked
+    private boolean active;
+    private String subject;
+    // Epoch seconds; null if the token could not be verified
+    private Long expiresAt;
+    private boolean revoked;
+}
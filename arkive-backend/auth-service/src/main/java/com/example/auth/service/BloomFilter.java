@@ -0,0 +1,67 @@
+package com.example.auth.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size bloom filter over SHA-256 digests. The digest is already uniformly distributed,
+ * so its first two 64-bit words serve as the two base hashes of Kirsch-Mitzenmacher double
+ * hashing instead of hashing the key again. Adds and lookups are lock-free and may run concurrently.
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * @param expectedInsertions The number of keys the filter is sized for
+     * @param falsePositiveRate The false positive rate wanted at that many keys
+     */
+    BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE, Math.max(1, (bits + 63) / 64));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount * 64;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(byte[] sha256) {
+        long h1 = ByteBuffer.wrap(sha256).getLong(0);
+        long h2 = ByteBuffer.wrap(sha256).getLong(8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, m) -> current | m);
+            }
+        }
+    }
+
+    boolean mightContain(byte[] sha256) {
+        long h1 = ByteBuffer.wrap(sha256).getLong(0);
+        long h2 = ByteBuffer.wrap(sha256).getLong(8);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The chance that a key never added is reported as present, estimated from how many bits
+     * are set. It grows as keys are added, and beyond the expected insertions past the rate the
+     * filter was sized for.
+     */
+    double expectedFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bitCount, hashCount);
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.auth.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.SubscriptionListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Blacklist of logged out tokens. Redis holds the authoritative entries, keyed by the token's
+ * SHA-256 and expiring with the token; each instance keeps a bloom filter of the blacklisted
+ * digests in front of it, so a token that was never blacklisted (nearly all of them) is accepted
+ * without a Redis round trip and only probable hits are checked in Redis.
+ *
+ * Every blacklisting is numbered by a version counter and broadcast over pub/sub. Instances add
+ * broadcast digests to their filter and track which versions they have applied; a version still
+ * missing after a sync interval (a broadcast lost while disconnected) or a re-subscription after a
+ * reconnect reloads the filter by scanning the entries. Until the first load, every check goes to Redis.
+ */
+@Component
+@Slf4j
+public class TokenBlacklist implements MessageListener, SubscriptionListener {
+
+    public static final String CHANNEL = "auth:blacklist:added";
+    static final String VERSION_KEY = "auth:blacklist:version";
+
+    // Entries are this prefix followed by the 32 digest bytes
+    static final byte[] KEY_PREFIX = "auth:bl:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BLACKLISTED = {'1'};
+
+    private static final int SCAN_COUNT = 1000;
+
+    private final RedisTemplate<byte[], byte[]> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private final Duration rebuildInterval;
+
+    // Filter answering checks, null until loaded from Redis
+    private volatile BloomFilter filter;
+    // Filter being loaded, which also receives broadcast digests until it replaces the current one
+    private volatile BloomFilter loading;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private volatile long rebuiltAt;
+    private volatile long lastLoaded;
+
+    // Every version up to applied is in the filter; appliedAhead holds versions applied out of order
+    private long applied;
+    private final TreeSet<Long> appliedAhead = new TreeSet<>();
+    // Redis version seen by the last sync while this instance was behind, or -1
+    private long behindAt = -1;
+
+    private final Counter filtered;
+    private final Counter confirmed;
+    private final Counter falsePositives;
+    private final Counter unfiltered;
+    private final Counter rebuilds;
+
+    public TokenBlacklist(RedisTemplate<byte[], byte[]> redisTemplate,
+                          StringRedisTemplate stringRedisTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${auth.blacklist.filter.expected-insertions:100000}") long expectedInsertions,
+                          @Value("${auth.blacklist.filter.false-positive-rate:0.001}") double falsePositiveRate,
+                          @Value("${auth.blacklist.filter.rebuild-interval:1h}") Duration rebuildInterval) {
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildInterval = rebuildInterval;
+        // Observed false positive rate = false-positive / (false-positive + filtered)
+        this.filtered = meterRegistry.counter("auth.blacklist.checks", "result", "filtered");
+        this.confirmed = meterRegistry.counter("auth.blacklist.checks", "result", "confirmed");
+        this.falsePositives = meterRegistry.counter("auth.blacklist.checks", "result", "false-positive");
+        this.unfiltered = meterRegistry.counter("auth.blacklist.checks", "result", "unfiltered");
+        this.rebuilds = meterRegistry.counter("auth.blacklist.filter.rebuilds");
+        meterRegistry.gauge("auth.blacklist.filter.expected-false-positive-rate", this,
+                blacklist -> blacklist.filter != null ? blacklist.filter.expectedFalsePositiveRate() : Double.NaN);
+    }
+
+    /**
+     * The SHA-256 a token is blacklisted under.
+     */
+    public static byte[] digest(String token) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Whether the token is blacklisted.
+     *
+     * @param tokenDigest The token's {@link #digest}
+     */
+    public boolean contains(byte[] tokenDigest) {
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(tokenDigest)) {
+            filtered.increment();
+            return false;
+        }
+
+        boolean blacklisted = Boolean.TRUE.equals(redisTemplate.hasKey(key(tokenDigest)));
+        count(current, blacklisted);
+        return blacklisted;
+    }
+
+    /**
+     * Whether each of the tokens is blacklisted. All probable hits are checked in a single MGET,
+     * so a batch costs at most one Redis round trip.
+     *
+     * @param tokenDigests The tokens' {@link #digest}s
+     * @return Whether the token at the same index is blacklisted
+     */
+    public boolean[] containsAll(List<byte[]> tokenDigests) {
+        BloomFilter current = filter;
+        boolean[] blacklisted = new boolean[tokenDigests.size()];
+        List<Integer> probable = new ArrayList<>();
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < tokenDigests.size(); i++) {
+            if (current != null && !current.mightContain(tokenDigests.get(i))) {
+                filtered.increment();
+            } else {
+                probable.add(i);
+                keys.add(key(tokenDigests.get(i)));
+            }
+        }
+        if (keys.isEmpty()) {
+            return blacklisted;
+        }
+
+        List<byte[]> entries = redisTemplate.opsForValue().multiGet(keys);
+        for (int i = 0; i < probable.size(); i++) {
+            boolean found = entries != null && entries.get(i) != null;
+            blacklisted[probable.get(i)] = found;
+            count(current, found);
+        }
+        return blacklisted;
+    }
+
+    /**
+     * Blacklists the token until it expires, on every instance.
+     *
+     * @param tokenDigest The token's {@link #digest}
+     * @param ttlMillis How long the token remains valid
+     */
+    public void add(byte[] tokenDigest, long ttlMillis) {
+        // Written before the version moves, so a reload that reads the version also finds the entry
+        redisTemplate.opsForValue().set(key(tokenDigest), BLACKLISTED, ttlMillis, TimeUnit.MILLISECONDS);
+        Long version = stringRedisTemplate.opsForValue().increment(VERSION_KEY);
+        apply(version, tokenDigest);
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, version + ":" + HexFormat.of().formatHex(tokenDigest));
+        } catch (Exception e) {
+            // Other instances notice the missing version on their next sync
+            log.warn("Could not broadcast blacklisted token: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        apply(Long.parseLong(body.substring(0, separator)), HexFormat.of().parseHex(body, separator + 1, body.length()));
+    }
+
+    // Called on the first subscription and again once the container re-subscribes after a reconnect,
+    // when broadcasts sent in between are lost
+    @Override
+    public void onChannelSubscribed(byte[] channel, long count) {
+        CompletableFuture.runAsync(this::rebuild);
+    }
+
+    /**
+     * Compares the applied versions with Redis and reloads the filter when a broadcast was
+     * missed, Redis lost its data, the filter filled up, or it is due to shed expired tokens.
+     */
+    @Scheduled(fixedDelayString = "${auth.blacklist.sync-interval:10s}")
+    public void sync() {
+        try {
+            BloomFilter current = filter;
+            if (current == null
+                    || System.currentTimeMillis() - rebuiltAt > rebuildInterval.toMillis()
+                    || current.expectedFalsePositiveRate() > 2 * falsePositiveRate) {
+                rebuild();
+                return;
+            }
+            long version = currentVersion();
+            boolean stale;
+            synchronized (this) {
+                if (version < applied) {
+                    // Redis was flushed or restarted without its data
+                    stale = true;
+                } else if (applied == version) {
+                    behindAt = -1;
+                    stale = false;
+                } else {
+                    // Broadcasts still in flight are given one interval to arrive
+                    stale = behindAt >= 0 && applied < behindAt;
+                    if (!stale) {
+                        behindAt = version;
+                    }
+                }
+            }
+            if (stale) {
+                rebuild();
+            }
+        } catch (Exception e) {
+            log.warn("Could not sync the token blacklist filter: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Loads a new filter from the entries in Redis and replaces the current one with it.
+     */
+    void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            // Leaves room to grow until the next rebuild
+            BloomFilter next = new BloomFilter(Math.max(expectedInsertions, 2 * lastLoaded), falsePositiveRate);
+
+            // Set before the version is read, so any later blacklisting reaches the new filter
+            loading = next;
+            long version = currentVersion();
+            long loaded = 0;
+            // SCAN returns every key that exists throughout the scan, which includes all entries up to version
+            try (Cursor<byte[]> keys = scan(KEY_PREFIX)) {
+                while (keys.hasNext()) {
+                    byte[] key = keys.next();
+                    if (key.length == KEY_PREFIX.length + 32) {
+                        next.put(Arrays.copyOfRange(key, KEY_PREFIX.length, key.length));
+                        loaded++;
+                    }
+                }
+            }
+
+            synchronized (this) {
+                applied = version;
+                appliedAhead.headSet(version, true).clear();
+                advance();
+                behindAt = -1;
+            }
+            filter = next;
+            rebuiltAt = now;
+            lastLoaded = loaded;
+            rebuilds.increment();
+            log.info("Loaded {} blacklisted tokens into the filter at version {}", loaded, version);
+        } catch (Exception e) {
+            log.warn("Could not load the token blacklist filter: {}", e.getMessage());
+        } finally {
+            loading = null;
+            rebuilding.set(false);
+        }
+    }
+
+    private void count(BloomFilter current, boolean blacklisted) {
+        if (current == null) {
+            unfiltered.increment();
+        } else if (blacklisted) {
+            confirmed.increment();
+        } else {
+            falsePositives.increment();
+        }
+    }
+
+    private void apply(long version, byte[] tokenDigest) {
+        // loading is read first: once it is cleared, filter already holds its replacement
+        BloomFilter next = loading;
+        BloomFilter current = filter;
+        if (next != null) {
+            next.put(tokenDigest);
+        }
+        if (current != null) {
+            current.put(tokenDigest);
+        }
+        synchronized (this) {
+            if (version > applied) {
+                appliedAhead.add(version);
+                advance();
+            }
+        }
+    }
+
+    private void advance() {
+        while (appliedAhead.remove(applied + 1)) {
+            applied++;
+        }
+    }
+
+    private long currentVersion() {
+        String version = stringRedisTemplate.opsForValue().get(VERSION_KEY);
+        return version != null ? Long.parseLong(version) : 0;
+    }
+
+    private Cursor<byte[]> scan(byte[] prefix) {
+        byte[] pattern = Arrays.copyOf(prefix, prefix.length + 1);
+        pattern[prefix.length] = '*';
+        return redisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(SCAN_COUNT).build());
+    }
+
+    private static byte[] key(byte[] tokenDigest) {
+        byte[] key = Arrays.copyOf(KEY_PREFIX, KEY_PREFIX.length + tokenDigest.length);
+        System.arraycopy(tokenDigest, 0, key, KEY_PREFIX.length, tokenDigest.length);
+        return key;
+    }
+}
@@ -2,10 +2,16 @@ package com.example.auth;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 @SpringBootTest
 class AuthApplicationTests {
 
+	// Subscribing needs a running Redis
+	@MockitoBean
+	private RedisMessageListenerContainer redisMessageListenerContainer;
+
 	@Test
 	void contextLoads() {
 	}
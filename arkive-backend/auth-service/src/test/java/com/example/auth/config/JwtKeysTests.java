@@ -0,0 +1,183 @@
+package com.example.auth.config;
+
+import com.example.auth.service.TokenBlacklist;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.jsonwebtoken.security.WeakKeyException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class JwtKeysTests {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef";
+
+    @Test
+    void tokensSignedWithTheConfiguredSecretVerifyOnEveryReplica() {
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setSecret(SECRET);
+
+        String token = jwtUtil(properties).generateToken("user@example.com");
+
+        // A restarted or second instance with the same configuration
+        assertEquals("user@example.com", jwtUtil(properties).extractSubject(token));
+        assertEquals(JwtKeys.DEFAULT_KEY_ID, Jwts.parserBuilder().setSigningKey(SECRET.getBytes(StandardCharsets.UTF_8))
+                .build().parseClaimsJws(token).getHeader().getKeyId());
+    }
+
+    @Test
+    void tokensOfARotatedOutKeyVerifyUntilTheKeyIsRemoved() throws Exception {
+        KeyPair pair = ecKeyPair();
+        JwtKeyProperties before = new JwtKeyProperties();
+        before.setKeys(List.of(hmacKey("old", SECRET)));
+        String oldToken = jwtUtil(before).generateToken("user@example.com");
+
+        JwtKeyProperties during = new JwtKeyProperties();
+        during.setSigningKeyId("new");
+        during.setKeys(List.of(ecKey("new", pair, true), hmacKey("old", SECRET)));
+        JwtUtil rotating = jwtUtil(during);
+        String newToken = rotating.generateToken("user@example.com");
+
+        assertNotNull(rotating.getClaims(oldToken));
+        assertNotNull(rotating.getClaims(newToken));
+        assertEquals("new", Jwts.parserBuilder().setSigningKey(pair.getPublic()).build()
+                .parseClaimsJws(newToken).getHeader().getKeyId());
+
+        JwtKeyProperties after = new JwtKeyProperties();
+        after.setKeys(List.of(ecKey("new", pair, true)));
+        assertNull(jwtUtil(after).getClaims(oldToken));
+        assertNotNull(jwtUtil(after).getClaims(newToken));
+    }
+
+    @Test
+    void tokensNamingAnUnknownKeyOrAnotherAlgorithmAreRejected() throws Exception {
+        KeyPair pair = ecKeyPair();
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setSigningKeyId("ec");
+        properties.setKeys(List.of(ecKey("ec", pair, true), hmacKey("hmac", SECRET)));
+        JwtUtil jwtUtil = jwtUtil(properties);
+
+        String unknownKey = Jwts.builder().setHeaderParam("kid", "other").setSubject("user@example.com")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+        String withoutKeyId = Jwts.builder().setSubject("user@example.com").signWith(pair.getPrivate()).compact();
+        // Signed with the HMAC secret but naming the EC key
+        String wrongAlgorithm = Jwts.builder().setHeaderParam("kid", "ec").setSubject("user@example.com")
+                .signWith(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+
+        assertNull(jwtUtil.getClaims(unknownKey));
+        assertNull(jwtUtil.getClaims(withoutKeyId));
+        assertNull(jwtUtil.getClaims(wrongAlgorithm));
+    }
+
+    @Test
+    void onlyPublicKeysArePublished() throws Exception {
+        KeyPair pair = ecKeyPair();
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setSigningKeyId("ec");
+        properties.setKeys(List.of(ecKey("ec", pair, true), hmacKey("hmac", SECRET)));
+
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> jwks = (List<Map<String, Object>>) new JwtKeys(properties).publicJwks().get("keys");
+
+        assertEquals(1, jwks.size());
+        Map<String, Object> jwk = jwks.get(0);
+        assertEquals("ec", jwk.get("kid"));
+        assertEquals("ES256", jwk.get("alg"));
+        ECPublicKey publicKey = (ECPublicKey) pair.getPublic();
+        assertEquals(publicKey.getW().getAffineX(), new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("x"))));
+        assertEquals(publicKey.getW().getAffineY(), new BigInteger(1, Base64.getUrlDecoder().decode((String) jwk.get("y"))));
+    }
+
+    @Test
+    void verificationOnlyKeysCannotSign() throws Exception {
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setKeys(List.of(ecKey("ec", ecKeyPair(), false)));
+
+        assertThrows(IllegalStateException.class, () -> new JwtKeys(properties));
+    }
+
+    @Test
+    void invalidConfigurationsFailAtStartup() {
+        JwtKeyProperties unnamedSigningKey = new JwtKeyProperties();
+        unnamedSigningKey.setKeys(List.of(hmacKey("a", SECRET), hmacKey("b", SECRET)));
+        JwtKeyProperties eddsa = new JwtKeyProperties();
+        JwtKeyProperties.Key eddsaKey = hmacKey("ed", SECRET);
+        eddsaKey.setAlgorithm("EdDSA");
+        eddsa.setKeys(List.of(eddsaKey));
+        JwtKeyProperties weakSecret = new JwtKeyProperties();
+        weakSecret.setSecret("too-short");
+
+        assertThrows(IllegalStateException.class, () -> new JwtKeys(unnamedSigningKey));
+        assertThrows(IllegalStateException.class, () -> new JwtKeys(eddsa));
+        assertThrows(WeakKeyException.class, () -> new JwtKeys(weakSecret));
+    }
+
+    @Test
+    void pemKeysWithEscapedLineBreaksAreAccepted() throws Exception {
+        KeyPair pair = ecKeyPair();
+        JwtKeyProperties.Key key = ecKey("ec", pair, true);
+        key.setPrivateKey(key.getPrivateKey().replace("\n", "\\n"));
+        key.setPublicKey(key.getPublicKey().replace("\n", "\\n"));
+        JwtKeyProperties properties = new JwtKeyProperties();
+        properties.setKeys(List.of(key));
+
+        JwtKeys keys = new JwtKeys(properties);
+
+        assertEquals(SignatureAlgorithm.ES256, keys.signingAlgorithm());
+        assertNotNull(jwtUtil(properties).getClaims(jwtUtil(properties).generateToken("user@example.com")));
+    }
+
+    private static JwtUtil jwtUtil(JwtKeyProperties properties) {
+        JwtUtil jwtUtil = new JwtUtil(new JwtKeys(properties), 1000);
+        ReflectionTestUtils.setField(jwtUtil, "tokenBlacklist", mock(TokenBlacklist.class));
+        return jwtUtil;
+    }
+
+    private static JwtKeyProperties.Key hmacKey(String id, String secret) {
+        JwtKeyProperties.Key key = new JwtKeyProperties.Key();
+        key.setId(id);
+        key.setSecret(secret);
+        return key;
+    }
+
+    private static JwtKeyProperties.Key ecKey(String id, KeyPair pair, boolean withPrivateKey) {
+        JwtKeyProperties.Key key = new JwtKeyProperties.Key();
+        key.setId(id);
+        key.setAlgorithm("ES256");
+        key.setPublicKey(pem("PUBLIC KEY", pair.getPublic().getEncoded()));
+        if (withPrivateKey) {
+            key.setPrivateKey(pem("PRIVATE KEY", pair.getPrivate().getEncoded()));
+        }
+        return key;
+    }
+
+    private static String pem(String type, byte[] encoded) {
+        return "-----BEGIN " + type + "-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(encoded)
+                + "\n-----END " + type + "-----\n";
+    }
+
+    private static KeyPair ecKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return generator.generateKeyPair();
+    }
+}
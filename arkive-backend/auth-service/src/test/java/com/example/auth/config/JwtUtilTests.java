@@ -0,0 +1,102 @@
+package com.example.auth.config;
+
+import com.example.auth.dto.TokenIntrospection;
+import com.example.auth.service.TokenBlacklist;
+import io.jsonwebtoken.Claims;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtUtilTests {
+
+    private JwtUtil jwtUtil;
+    private TokenBlacklist tokenBlacklist;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(new JwtKeys(new JwtKeyProperties()), 1000);
+        tokenBlacklist = mock(TokenBlacklist.class);
+        ReflectionTestUtils.setField(jwtUtil, "tokenBlacklist", tokenBlacklist);
+    }
+
+    @Test
+    void repeatedValidationsReuseTheVerifiedClaims() {
+        String token = jwtUtil.generateToken("user@example.com");
+
+        Claims first = jwtUtil.getClaims(token);
+        Claims second = jwtUtil.getClaims(token);
+
+        assertEquals("user@example.com", first.getSubject());
+        assertSame(first, second);
+        assertEquals("user@example.com", jwtUtil.extractSubject(token));
+    }
+
+    @Test
+    void tamperedAndForeignTokensAreRejected() {
+        String token = jwtUtil.generateToken("user@example.com");
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("A") ? "BB" : "AA");
+
+        assertNull(jwtUtil.getClaims(tampered));
+        assertNull(jwtUtil.getClaims(new JwtUtil(new JwtKeys(new JwtKeyProperties()), 1000).generateToken("user@example.com")));
+        assertNull(jwtUtil.getClaims("not-a-token"));
+        assertNull(jwtUtil.getClaims(null));
+    }
+
+    @Test
+    void blacklistedTokensFailValidationEvenWhenTheirClaimsAreCached() {
+        String token = jwtUtil.generateToken("user@example.com");
+        assertTrue(jwtUtil.validate(token));
+
+        when(tokenBlacklist.contains(any(byte[].class))).thenReturn(true);
+
+        assertFalse(jwtUtil.validate(token));
+    }
+
+    @Test
+    void introspectionReportsEachTokenInOrderWithOneBlacklistLookup() {
+        String active = jwtUtil.generateToken("active@example.com");
+        String revoked = jwtUtil.generateToken("revoked@example.com");
+        when(tokenBlacklist.containsAll(anyList())).thenReturn(new boolean[] {false, true});
+
+        List<TokenIntrospection> results = jwtUtil.introspect(Arrays.asList(active, "not-a-token", revoked, null));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isActive());
+        assertEquals("active@example.com", results.get(0).getSubject());
+        assertEquals(jwtUtil.getClaims(active).getExpiration().getTime() / 1000, results.get(0).getExpiresAt());
+        assertEquals(new TokenIntrospection(false, null, null, false), results.get(1));
+        assertFalse(results.get(2).isActive());
+        assertTrue(results.get(2).isRevoked());
+        assertEquals("revoked@example.com", results.get(2).getSubject());
+        assertEquals(new TokenIntrospection(false, null, null, false), results.get(3));
+        // Only the two verified tokens are looked up
+        verify(tokenBlacklist).containsAll(argThat(digests -> digests.size() == 2));
+    }
+
+    @Test
+    void tokensIssuedTogetherAreDistinct() {
+        String first = jwtUtil.generateToken("user@example.com");
+        String second = jwtUtil.generateToken("user@example.com");
+
+        // Logging out of one must not blacklist the other
+        assertNotEquals(first, second);
+        assertNotNull(jwtUtil.getClaims(first).getId());
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.auth.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenBlacklistTests {
+
+    // Keys in the mocked Redis
+    private final Set<ByteBuffer> keys = ConcurrentHashMap.newKeySet();
+
+    private RedisTemplate<byte[], byte[]> redisTemplate;
+    private ValueOperations<String, String> values;
+    private StringRedisTemplate stringRedisTemplate;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        ValueOperations<byte[], byte[]> entries = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(entries);
+        when(redisTemplate.hasKey(any(byte[].class))).thenAnswer(invocation -> keys.contains(ByteBuffer.wrap(invocation.getArgument(0))));
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> {
+            byte[] pattern = ((ScanOptions) invocation.getArgument(0)).getBytePattern();
+            byte[] prefix = Arrays.copyOf(pattern, pattern.length - 1);
+            return cursor(keys.stream()
+                    .map(ByteBuffer::array)
+                    .filter(key -> key.length >= prefix.length && Arrays.equals(prefix, Arrays.copyOf(key, prefix.length)))
+                    .toList());
+        });
+        when(entries.multiGet(anyCollection())).thenAnswer(invocation -> {
+            Collection<byte[]> requested = invocation.getArgument(0);
+            return requested.stream()
+                    .map(key -> keys.contains(ByteBuffer.wrap(key)) ? new byte[] {'1'} : null)
+                    .collect(Collectors.toList());
+        });
+        doAnswer(invocation -> keys.add(ByteBuffer.wrap(invocation.getArgument(0))))
+                .when(entries).set(any(byte[].class), any(byte[].class), anyLong(), eq(TimeUnit.MILLISECONDS));
+
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        values = mock(ValueOperations.class);
+        when(stringRedisTemplate.opsForValue()).thenReturn(values);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void tokensThatWereNeverBlacklistedAreAcceptedWithoutRedis() {
+        TokenBlacklist blacklist = loaded(100_000, 0.001);
+
+        assertFalse(blacklist.contains(TokenBlacklist.digest("token")));
+
+        verify(redisTemplate, never()).hasKey(any(byte[].class));
+        assertEquals(1, checks("filtered"));
+    }
+
+    @Test
+    void everyCheckGoesToRedisUntilTheFilterIsLoaded() {
+        TokenBlacklist blacklist = blacklist(100_000, 0.001);
+
+        assertFalse(blacklist.contains(TokenBlacklist.digest("token")));
+
+        verify(redisTemplate).hasKey(any(byte[].class));
+        assertEquals(1, checks("unfiltered"));
+    }
+
+    @Test
+    void blacklistedTokensAreStoredUnderTheirDigestAndBroadcast() {
+        TokenBlacklist blacklist = loaded(100_000, 0.001);
+        when(values.increment(TokenBlacklist.VERSION_KEY)).thenReturn(1L);
+        byte[] digest = TokenBlacklist.digest("token");
+
+        blacklist.add(digest, 60_000);
+
+        assertTrue(blacklist.contains(digest));
+        assertEquals(1, checks("confirmed"));
+        assertTrue(keys.contains(ByteBuffer.wrap(key(digest))));
+        assertEquals(TokenBlacklist.KEY_PREFIX.length + 32, key(digest).length);
+        verify(stringRedisTemplate).convertAndSend(TokenBlacklist.CHANNEL, "1:" + HexFormat.of().formatHex(digest));
+    }
+
+    @Test
+    void batchesCheckAllProbableHitsInOneRoundTrip() {
+        byte[] revoked = TokenBlacklist.digest("revoked");
+        keys.add(ByteBuffer.wrap(key(revoked)));
+        TokenBlacklist blacklist = loaded(100_000, 0.001);
+        List<byte[]> batch = List.of(TokenBlacklist.digest("a"), revoked, TokenBlacklist.digest("b"), revoked);
+
+        boolean[] blacklisted = blacklist.containsAll(batch);
+
+        assertArrayEquals(new boolean[] {false, true, false, true}, blacklisted);
+        verify(redisTemplate.opsForValue(), times(1)).multiGet(anyCollection());
+        verify(redisTemplate, never()).hasKey(any(byte[].class));
+        assertEquals(2, checks("filtered"));
+        assertEquals(2, checks("confirmed"));
+    }
+
+    @Test
+    void probableHitsRedisDoesNotKnowAreCountedAsFalsePositives() {
+        // Sized for a single token at a high rate, so other tokens often collide with it
+        keys.add(ByteBuffer.wrap(key(TokenBlacklist.digest("blacklisted"))));
+        TokenBlacklist blacklist = loaded(1, 0.5);
+
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(blacklist.contains(TokenBlacklist.digest(UUID.randomUUID().toString())));
+        }
+
+        assertTrue(checks("false-positive") > 0);
+        assertEquals(1000, checks("false-positive") + checks("filtered"));
+    }
+
+    @Test
+    void aBroadcastMissedWhileDisconnectedIsRecoveredOnSync() {
+        TokenBlacklist blacklist = loaded(100_000, 0.001);
+        byte[] digest = TokenBlacklist.digest("token");
+        // Blacklisted by another instance while this one was not subscribed
+        keys.add(ByteBuffer.wrap(key(digest)));
+        when(values.get(TokenBlacklist.VERSION_KEY)).thenReturn("1");
+
+        // The first sync allows for the broadcast still being in flight
+        blacklist.sync();
+        assertFalse(blacklist.contains(digest));
+
+        blacklist.sync();
+        assertTrue(blacklist.contains(digest));
+        assertEquals(2, meterRegistry.counter("auth.blacklist.filter.rebuilds").count());
+    }
+
+    @Test
+    void broadcastsArrivingOutOfOrderDoNotReloadTheFilter() {
+        TokenBlacklist blacklist = loaded(100_000, 0.001);
+        when(values.get(TokenBlacklist.VERSION_KEY)).thenReturn("2");
+        byte[] first = TokenBlacklist.digest("first");
+        byte[] second = TokenBlacklist.digest("second");
+        keys.add(ByteBuffer.wrap(key(first)));
+        keys.add(ByteBuffer.wrap(key(second)));
+
+        blacklist.onMessage(message("2:" + HexFormat.of().formatHex(second)), null);
+        blacklist.sync();
+        blacklist.onMessage(message("1:" + HexFormat.of().formatHex(first)), null);
+        blacklist.sync();
+
+        assertEquals(1, meterRegistry.counter("auth.blacklist.filter.rebuilds").count());
+        assertTrue(blacklist.contains(first));
+        assertTrue(blacklist.contains(second));
+    }
+
+    @Test
+    void filterStaysNearItsFalsePositiveRateWhenFull() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put(TokenBlacklist.digest("blacklisted-" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(TokenBlacklist.digest("other-" + i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < 1500, falsePositives + " false positives");
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.003);
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain(TokenBlacklist.digest("blacklisted-" + i)));
+        }
+    }
+
+    private TokenBlacklist blacklist(long expectedInsertions, double falsePositiveRate) {
+        return new TokenBlacklist(redisTemplate, stringRedisTemplate, meterRegistry,
+                expectedInsertions, falsePositiveRate, Duration.ofHours(1));
+    }
+
+    private TokenBlacklist loaded(long expectedInsertions, double falsePositiveRate) {
+        TokenBlacklist blacklist = blacklist(expectedInsertions, falsePositiveRate);
+        blacklist.rebuild();
+        return blacklist;
+    }
+
+    private double checks(String result) {
+        return meterRegistry.counter("auth.blacklist.checks", "result", result).count();
+    }
+
+    private static byte[] key(byte[] digest) {
+        byte[] key = Arrays.copyOf(TokenBlacklist.KEY_PREFIX, TokenBlacklist.KEY_PREFIX.length + digest.length);
+        System.arraycopy(digest, 0, key, TokenBlacklist.KEY_PREFIX.length, digest.length);
+        return key;
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(TokenBlacklist.CHANNEL.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Cursor<byte[]> cursor(List<byte[]> keys) {
+        Iterator<byte[]> iterator = keys.iterator();
+        Cursor<byte[]> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+}
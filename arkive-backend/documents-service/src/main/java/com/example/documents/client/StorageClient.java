@@ -1,16 +1,33 @@
 package com.example.documents.client;
 
+import com.example.documents.dto.BatchDeleteResultDto;
+import com.example.documents.dto.FileMetadataDto;
+import com.example.documents.dto.MultipartUploadDto;
+import com.example.documents.dto.ObjectPageDto;
+import com.example.documents.dto.PresignedUrlDto;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
@@ -18,6 +35,14 @@ import java.util.Map;
 @Slf4j
 public class StorageClient {
 
+    private static final List<String> FORWARDED_DOWNLOAD_HEADERS = List.of(
+            HttpHeaders.RANGE, HttpHeaders.IF_RANGE, HttpHeaders.IF_NONE_MATCH, HttpHeaders.IF_MODIFIED_SINCE);
+
+    private static final String CONTENT_SHA256 = "X-Content-SHA256";
+
+    // The most files the storage service deletes in one request
+    private static final int DELETE_BATCH_SIZE = 1000;
+
     private final RestTemplate restTemplate;
     
     @Value("${storage.service.url:http://storage-service:8080}")
@@ -61,6 +86,53 @@ public class StorageClient {
         }
     }
     
+    /**
+     * Uploads a file to the storage service by piping the given stream into the request
+     * body as it is read, without multipart encoding or buffering
+     * 
+     * @param content The file content
+     * @param originalFilename The client's name for the file
+     * @param contentType The content type of the file
+     * @param contentLength The exact number of bytes in the content
+     * @param sha256 The SHA-256 the client declared for the content, checked by the storage service; may be null
+     * @return The filename of the uploaded file
+     */
+    public String uploadFile(InputStream content, String originalFilename, String contentType, long contentLength,
+                             String sha256) {
+        URI uploadUri = UriComponentsBuilder.fromUriString(storageServiceUrl + "/api/storage/upload/stream")
+                .queryParam("filename", originalFilename)
+                .encode()
+                .build()
+                .toUri();
+        log.info("Streaming file to {}", uploadUri);
+        
+        try {
+            ResponseEntity<Map> response = restTemplate.execute(uploadUri, HttpMethod.PUT, request -> {
+                request.getHeaders().setContentType(MediaType.parseMediaType(contentType));
+                request.getHeaders().setContentLength(contentLength);
+                if (sha256 != null) {
+                    request.getHeaders().set(CONTENT_SHA256, sha256);
+                }
+                if (request instanceof StreamingHttpOutputMessage streamingRequest) {
+                    streamingRequest.setBody(content::transferTo);
+                } else {
+                    content.transferTo(request.getBody());
+                }
+            }, restTemplate.responseEntityExtractor(Map.class));
+            
+            if (response != null && response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+                log.info("File uploaded successfully: {}", response.getBody().get("filename"));
+                return (String) response.getBody().get("filename");
+            } else {
+                log.error("Failed to upload file. Response: {}", response);
+                throw new RuntimeException("Failed to upload file");
+            }
+        } catch (Exception e) {
+            log.error("Error uploading file", e);
+            throw new RuntimeException("Error uploading file: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Gets the download URL for a file
      * 
@@ -72,31 +144,140 @@ public class StorageClient {
     }
     
     /**
-     * Downloads a file from the storage service
+     * Downloads a file from the storage service as a stream. The connection to the
+     * storage service stays open until the returned body is closed. Range and conditional
+     * request headers are forwarded, so the response may also be a 206, 304 or 416.
      * 
      * @param filename The filename to download
-     * @return The file's bytes
+     * @param requestHeaders The headers of the client request being served
+     * @return The storage service response status and headers and a stream over the file's content
      */
-    public byte[] downloadFile(String filename) {
+    public ResponseEntity<Resource> downloadFile(String filename, HttpHeaders requestHeaders) {
         String downloadUrl = storageServiceUrl + "/api/storage/download/" + filename;
         log.info("Downloading file from: {}", downloadUrl);
         
         try {
-            ResponseEntity<byte[]> response = restTemplate.getForEntity(downloadUrl, byte[].class);
+            ClientHttpRequest request = restTemplate.getRequestFactory()
+                    .createRequest(restTemplate.getUriTemplateHandler().expand(downloadUrl), HttpMethod.GET);
+            for (String header : FORWARDED_DOWNLOAD_HEADERS) {
+                if (requestHeaders.containsKey(header)) {
+                    request.getHeaders().put(header, requestHeaders.get(header));
+                }
+            }
+            ClientHttpResponse response = request.execute();
+            HttpStatusCode status = response.getStatusCode();
             
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                log.info("File downloaded successfully, size: {} bytes", response.getBody().length);
-                return response.getBody();
-            } else {
-                log.error("Failed to download file. Response status: {}", response.getStatusCode());
+            if (status.isSameCodeAs(HttpStatus.NOT_MODIFIED) || status.isSameCodeAs(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)) {
+                HttpHeaders headers = response.getHeaders();
+                response.close();
+                return new ResponseEntity<>(headers, status);
+            }
+            
+            if (!status.is2xxSuccessful()) {
+                log.error("Failed to download file. Response status: {}", status);
+                response.close();
                 throw new RuntimeException("Failed to download file");
             }
+            
+            InputStream body = new FilterInputStream(response.getBody()) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        response.close();
+                    }
+                }
+            };
+            return new ResponseEntity<>(new InputStreamResource(body), response.getHeaders(), status);
         } catch (Exception e) {
             log.error("Error downloading file", e);
             throw new RuntimeException("Error downloading file: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Gets a URL the client can upload a file to directly, bypassing both services
+     * 
+     * @param originalFilename The client's name for the file
+     * @param size The size the client declared for the file
+     * @return The presigned PUT URL and the storage name the file will have
+     */
+    public PresignedUrlDto presignUpload(String originalFilename, long size) {
+        URI presignUri = UriComponentsBuilder.fromUriString(storageServiceUrl + "/api/storage/presign/upload")
+                .queryParam("filename", originalFilename)
+                .queryParam("size", size)
+                .encode()
+                .build()
+                .toUri();
+        
+        try {
+            return restTemplate.postForObject(presignUri, null, PresignedUrlDto.class);
+        } catch (Exception e) {
+            log.error("Error presigning upload", e);
+            throw new RuntimeException("Error presigning upload: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Starts a resumable upload whose parts the client sends to the storage service itself
+     * 
+     * @param originalFilename The client's name for the file
+     * @param contentType The content type of the file
+     * @return The storage name of the file and the upload id its parts are sent under
+     */
+    public MultipartUploadDto initiateMultipartUpload(String originalFilename, String contentType) {
+        URI initiateUri = UriComponentsBuilder.fromUriString(storageServiceUrl + "/api/storage/multipart")
+                .queryParam("filename", originalFilename)
+                .queryParam("contentType", contentType)
+                .encode()
+                .build()
+                .toUri();
+        
+        try {
+            return restTemplate.postForObject(initiateUri, null, MultipartUploadDto.class);
+        } catch (Exception e) {
+            log.error("Error starting multipart upload", e);
+            throw new RuntimeException("Error starting multipart upload: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Gets a URL the client can download a file from directly
+     * 
+     * @param filename The filename to download
+     * @return The presigned GET URL
+     */
+    public PresignedUrlDto presignDownload(String filename) {
+        String presignUrl = storageServiceUrl + "/api/storage/presign/download/" + filename;
+        
+        try {
+            return restTemplate.getForObject(presignUrl, PresignedUrlDto.class);
+        } catch (Exception e) {
+            log.error("Error presigning download", e);
+            throw new RuntimeException("Error presigning download: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Reads the size and content type of a stored file
+     * 
+     * @param filename The filename to look up
+     * @return The file's metadata, or null if no such file is stored
+     */
+    public FileMetadataDto getFileMetadata(String filename) {
+        String metadataUrl = storageServiceUrl + "/api/storage/metadata/" + filename;
+        
+        try {
+            return restTemplate.getForObject(metadataUrl, FileMetadataDto.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            return null;
+        } catch (Exception e) {
+            log.error("Error reading file metadata", e);
+            throw new RuntimeException("Error reading file metadata: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Deletes a file from the storage service
      * 
@@ -128,6 +309,55 @@ public class StorageClient {
         }
     }
     
+    /**
+     * Deletes many files from the storage service, up to {@value #DELETE_BATCH_SIZE} per request
+     * 
+     * @param filenames The filenames to delete
+     * @return The files that could not be deleted, with the reason; empty if all were deleted
+     */
+    public Map<String, String> deleteFiles(Collection<String> filenames) {
+        String deleteUrl = storageServiceUrl + "/api/storage/delete";
+        List<String> pending = List.copyOf(filenames);
+        Map<String, String> failed = new LinkedHashMap<>();
+        
+        for (int from = 0; from < pending.size(); from += DELETE_BATCH_SIZE) {
+            List<String> batch = pending.subList(from, Math.min(from + DELETE_BATCH_SIZE, pending.size()));
+            log.info("Deleting {} files: {}", batch.size(), deleteUrl);
+            try {
+                BatchDeleteResultDto result = restTemplate.postForObject(deleteUrl, batch, BatchDeleteResultDto.class);
+                if (result != null && result.getFailed() != null) {
+                    failed.putAll(result.getFailed());
+                }
+            } catch (Exception e) {
+                log.error("Error deleting files", e);
+                batch.forEach(filename -> failed.put(filename, "Error deleting file: " + e.getMessage()));
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * Lists one page of stored files in ascending key order
+     * 
+     * @param startAfter The key to start after, or null for the first page
+     * @param limit The most files to return
+     * @return The page of files and the key the next page starts after
+     */
+    public ObjectPageDto listFiles(String startAfter, int limit) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromUriString(storageServiceUrl + "/api/storage/objects")
+                .queryParam("limit", limit);
+        if (startAfter != null) {
+            builder.queryParam("startAfter", startAfter);
+        }
+        
+        try {
+            return restTemplate.getForObject(builder.encode().build().toUri(), ObjectPageDto.class);
+        } catch (Exception e) {
+            log.error("Error listing files", e);
+            throw new RuntimeException("Error listing files: " + e.getMessage(), e);
+        }
+    }
+    
     /**
      * Helper class to handle MultipartFile as a Resource
      */
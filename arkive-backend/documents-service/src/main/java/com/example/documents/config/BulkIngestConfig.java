@@ -0,0 +1,24 @@
+package com.example.documents.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class BulkIngestConfig {
+
+    /**
+     * Runs bulk ingest uploads to the storage service. The pool is shared by all bulk
+     * requests, so its size bounds the number of concurrent uploads from this instance.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor storageUploadExecutor(@Value("${documents.bulk.upload-concurrency:8}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setThreadNamePrefix("storage-upload-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        return executor;
+    }
+}
@@ -1,15 +1,76 @@
 package com.example.documents.config;
 
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+
 @Configuration
 public class RestTemplateConfig {
 
+    /**
+     * Keep-alive connections to the storage service. The pool size caps how many requests
+     * may be in flight at once; further requests wait at most the lease timeout for a connection.
+     */
+    @Bean(destroyMethod = "close")
+    public PoolingHttpClientConnectionManager storageConnectionManager(
+            @Value("${storage.client.max-connections:100}") int maxConnections,
+            @Value("${storage.client.max-connections-per-route:100}") int maxConnectionsPerRoute,
+            @Value("${storage.client.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${storage.client.read-timeout:30s}") Duration readTimeout,
+            @Value("${storage.client.time-to-live:5m}") Duration timeToLive) {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.of(connectTimeout))
+                        .setSocketTimeout(Timeout.of(readTimeout))
+                        .setTimeToLive(TimeValue.of(timeToLive))
+                        // Pooled connections the storage service may have closed are checked before reuse
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient storageHttpClient(
+            PoolingHttpClientConnectionManager storageConnectionManager,
+            @Value("${storage.client.lease-timeout:5s}") Duration leaseTimeout,
+            @Value("${storage.client.read-timeout:30s}") Duration readTimeout,
+            @Value("${storage.client.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(storageConnectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(leaseTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient storageHttpClient) {
+        return builder.requestFactory(() -> new HttpComponentsClientHttpRequestFactory(storageHttpClient)).build();
+    }
+
+    // Exposes httpcomponents.httpclient.pool.* gauges (leased, available, pending, max) tagged httpclient=storage-service
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.build();
+    public MeterBinder storageConnectionPoolMetrics(PoolingHttpClientConnectionManager storageConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(storageConnectionManager, "storage-service");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package com.example.documents.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs background jobs such as the storage cleanup worker. Disabling it leaves queued
+ * cleanups in the database until an instance with scheduling enabled drains them.
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "documents.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
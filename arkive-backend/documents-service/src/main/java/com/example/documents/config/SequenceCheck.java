@@ -0,0 +1,66 @@
+package com.example.documents.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Refuses to start while an id sequence would hand out ids that are already taken. Hibernate's
+ * schema update creates missing sequences starting at 1, so a database whose tables predate them
+ * needs db/migration/V2__sequence_ids.sql to be run first, or every insert fails on a duplicate key.
+ * Runs once all beans, including the schema update, are initialized and before requests are served.
+ */
+@Component
+@RequiredArgsConstructor
+public class SequenceCheck implements SmartInitializingSingleton {
+
+    // Sequence name to the table whose ids it allocates
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "departments_seq", "departments",
+            "folders_seq", "folders",
+            "documents_seq", "documents");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+                return null;
+            }
+            try (Statement statement = connection.createStatement()) {
+                for (Map.Entry<String, String> sequence : SEQUENCES.entrySet()) {
+                    check(statement, sequence.getKey(), sequence.getValue());
+                }
+            }
+            return null;
+        });
+    }
+
+    // With the pooled-lo optimizer the next value fetched is the first id Hibernate assigns
+    private static void check(Statement statement, String sequence, String table) throws SQLException {
+        long nextId;
+        try (ResultSet result = statement.executeQuery("SELECT last_value, is_called, "
+                + "(SELECT increment_by FROM pg_sequences WHERE sequencename = '" + sequence + "') FROM " + sequence)) {
+            result.next();
+            nextId = result.getBoolean(2) ? result.getLong(1) + result.getLong(3) : result.getLong(1);
+        }
+        long maxId;
+        try (ResultSet result = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)) {
+            result.next();
+            maxId = result.getLong(1);
+        }
+        if (nextId <= maxId) {
+            throw new IllegalStateException("Sequence " + sequence + " would allocate id " + nextId
+                    + " but " + table + " already holds ids up to " + maxId
+                    + "; run db/migration/V2__sequence_ids.sql before starting the service");
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.example.documents.controller;
 
+import com.example.documents.dto.BulkDeleteResult;
+import com.example.documents.dto.BulkIngestResult;
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.DocumentDto;
+import com.example.documents.dto.MultipartUploadDto;
+import com.example.documents.dto.PresignUploadRequest;
+import com.example.documents.dto.PresignedUrlDto;
 import com.example.documents.dto.response.ApiResponse;
 import com.example.documents.service.DocumentService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.bind.annotation.RequestMethod;
 
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -21,10 +32,11 @@ public class DocumentController {
 
     private final DocumentService documentService;
 
+    // Listing endpoints accept ?size=&cursor= and return the cursor of the following page as nextCursor
     @GetMapping
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> getAllDocuments() {
-        List<DocumentDto> documents = documentService.getAllDocuments();
-        return ResponseEntity.ok(ApiResponse.success("Documents retrieved successfully", documents));
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> getAllDocuments(CursorPageRequest page) {
+        CursorPage<DocumentDto> documents = documentService.getAllDocuments(page);
+        return ResponseEntity.ok(ApiResponse.success("Documents retrieved successfully", documents.getItems(), documents.getNextCursor()));
     }
 
     @GetMapping("/{id}")
@@ -34,32 +46,33 @@ public class DocumentController {
     }
 
     @GetMapping("/folder/{folderId}")
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByFolderId(@PathVariable Long folderId) {
-        List<DocumentDto> documents = documentService.getDocumentsByFolderId(folderId);
-        return ResponseEntity.ok(ApiResponse.success("Folder Documents retrieved successfully", documents));
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByFolderId(@PathVariable Long folderId, CursorPageRequest page) {
+        CursorPage<DocumentDto> documents = documentService.getDocumentsByFolderId(folderId, page);
+        return ResponseEntity.ok(ApiResponse.success("Folder Documents retrieved successfully", documents.getItems(), documents.getNextCursor()));
     }
 
     @GetMapping("/department/{department}")
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByDepartment(@PathVariable String department) {
-        List<DocumentDto> documents = documentService.getDocumentsByDepartment(department);
-        return ResponseEntity.ok(ApiResponse.success("Department Documents retrieved successfully", documents));
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByDepartment(@PathVariable String department, CursorPageRequest page) {
+        CursorPage<DocumentDto> documents = documentService.getDocumentsByDepartment(department, page);
+        return ResponseEntity.ok(ApiResponse.success("Department Documents retrieved successfully", documents.getItems(), documents.getNextCursor()));
     }
     
     @GetMapping("/departments")
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByDepartments(@RequestParam List<String> departments) {
-        List<DocumentDto> documents = documentService.getDocumentsByDepartments(departments);
-        return ResponseEntity.ok(ApiResponse.success("Documents for multiple departments retrieved successfully", documents));
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByDepartments(@RequestParam List<String> departments, CursorPageRequest page) {
+        CursorPage<DocumentDto> documents = documentService.getDocumentsByDepartments(departments, page);
+        return ResponseEntity.ok(ApiResponse.success("Documents for multiple departments retrieved successfully", documents.getItems(), documents.getNextCursor()));
     }
 
     @GetMapping("/category/{category}")
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByCategory(@PathVariable String category) {
-        List<DocumentDto> documents = documentService.getDocumentsByCategory(category);
-        return ResponseEntity.ok(ApiResponse.success("Category Documents retrieved successfully", documents));
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> getDocumentsByCategory(@PathVariable String category, CursorPageRequest page) {
+        CursorPage<DocumentDto> documents = documentService.getDocumentsByCategory(category, page);
+        return ResponseEntity.ok(ApiResponse.success("Category Documents retrieved successfully", documents.getItems(), documents.getNextCursor()));
     }
     
     @SuppressWarnings("unchecked")
     @RequestMapping(value = "/filter", method = {RequestMethod.POST, RequestMethod.GET})
-    public ResponseEntity<ApiResponse<List<DocumentDto>>> filterDocuments(@RequestBody(required = false) Map<String, Object> filterParams) {
+    public ResponseEntity<ApiResponse<List<DocumentDto>>> filterDocuments(@RequestBody(required = false) Map<String, Object> filterParams,
+                                                                          CursorPageRequest page) {
         List<String> departments = null;
         Boolean noFolderId = null;
         
@@ -68,8 +81,8 @@ public class DocumentController {
             noFolderId = (Boolean) filterParams.get("noFolderId");
         }
         
-        List<DocumentDto> documents = documentService.filterDocuments(departments, noFolderId);
-        return ResponseEntity.ok(ApiResponse.success("Documents filtered successfully", documents));
+        CursorPage<DocumentDto> documents = documentService.filterDocuments(departments, noFolderId, page);
+        return ResponseEntity.ok(ApiResponse.success("Documents filtered successfully", documents.getItems(), documents.getNextCursor()));
     }
 
     @PostMapping(consumes = "multipart/form-data")
@@ -104,9 +117,95 @@ public class DocumentController {
         return new ResponseEntity<>(ApiResponse.success("Document created successfully", createdDocument), HttpStatus.CREATED);
     }
 
+    // Takes the file as the raw request body and metadata as query parameters; the body is piped to storage as it arrives.
+    // An X-Content-SHA256 header has storage reject a body that does not match it
+    @PostMapping("/stream")
+    public ResponseEntity<ApiResponse<DocumentDto>> createDocumentFromStream(
+            @RequestParam("filename") String filename,
+            @RequestParam("title") String title,
+            @RequestParam("department") String department,
+            @RequestParam(value = "departments", required = false) List<String> departments,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            @RequestParam("ownerId") Long ownerId,
+            @RequestParam("ownerName") String ownerName,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, defaultValue = MediaType.APPLICATION_OCTET_STREAM_VALUE) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, defaultValue = "-1") long contentLength,
+            @RequestHeader(value = "X-Content-SHA256", required = false) String sha256,
+            InputStream content) {
+
+        DocumentDto documentDto = new DocumentDto();
+        documentDto.setTitle(title);
+        documentDto.setDepartment(department);
+        documentDto.setDepartments(departments != null && !departments.isEmpty() ? departments : List.of(department));
+        documentDto.setCategory(category);
+        documentDto.setFolderId(folderId);
+        documentDto.setOwnerId(ownerId);
+        documentDto.setOwnerName(ownerName);
+
+        DocumentDto createdDocument = documentService.streamUploadDocument(content, filename, contentType, contentLength, sha256, documentDto);
+        return new ResponseEntity<>(ApiResponse.success("Document created successfully", createdDocument), HttpStatus.CREATED);
+    }
+
+    // Ingests many files in one request; each part becomes a document with the shared metadata, titled after its filename
+    @PostMapping(value = "/bulk", consumes = "multipart/form-data")
+    public ResponseEntity<ApiResponse<BulkIngestResult>> bulkCreateDocuments(
+            @RequestParam("files") List<MultipartFile> files,
+            @RequestParam("department") String department,
+            @RequestParam(value = "departments", required = false) List<String> departments,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "folderId", required = false) Long folderId,
+            @RequestParam("ownerId") Long ownerId,
+            @RequestParam("ownerName") String ownerName) {
+
+        DocumentDto template = new DocumentDto();
+        template.setDepartment(department);
+        template.setDepartments(departments != null && !departments.isEmpty() ? departments : List.of(department));
+        template.setCategory(category);
+        template.setFolderId(folderId);
+        template.setOwnerId(ownerId);
+        template.setOwnerName(ownerName);
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files, template);
+        return ResponseEntity.ok(ApiResponse.success("Bulk upload completed", result));
+    }
+
+    // Deletes many documents at once; each id is reported as deleted or with the reason it was not
+    @PostMapping("/bulk/delete")
+    public ResponseEntity<ApiResponse<BulkDeleteResult>> bulkDeleteDocuments(@RequestBody List<Long> ids) {
+        BulkDeleteResult result = documentService.bulkDeleteDocuments(ids);
+        return ResponseEntity.ok(ApiResponse.success("Bulk delete completed", result));
+    }
+
     @GetMapping("/download/{id}")
-    public ResponseEntity<byte[]> downloadDocument(@PathVariable Long id) {
-        return documentService.downloadDocument(id);
+    public ResponseEntity<Resource> downloadDocument(@PathVariable Long id, @RequestHeader HttpHeaders headers) {
+        return documentService.downloadDocument(id, headers);
+    }
+
+    // Direct upload: returns a URL to PUT the file to (sending the declared Content-Type), then confirm it below
+    @PostMapping("/presign")
+    public ResponseEntity<ApiResponse<PresignedUrlDto>> presignUpload(@Valid @RequestBody PresignUploadRequest request) {
+        PresignedUrlDto uploadUrl = documentService.presignUpload(request);
+        return ResponseEntity.ok(ApiResponse.success("Upload URL created successfully", uploadUrl));
+    }
+
+    // Resumable upload of very large files: parts go to /api/storage/multipart, then the upload is confirmed below
+    @PostMapping("/multipart")
+    public ResponseEntity<ApiResponse<MultipartUploadDto>> initiateMultipartUpload(@Valid @RequestBody PresignUploadRequest request) {
+        MultipartUploadDto upload = documentService.initiateMultipartUpload(request);
+        return ResponseEntity.ok(ApiResponse.success("Upload started successfully", upload));
+    }
+
+    @PostMapping("/presign/{filename}/confirm")
+    public ResponseEntity<ApiResponse<DocumentDto>> confirmUpload(@PathVariable String filename) {
+        DocumentDto createdDocument = documentService.confirmUpload(filename);
+        return new ResponseEntity<>(ApiResponse.success("Document created successfully", createdDocument), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/{id}/download-url")
+    public ResponseEntity<ApiResponse<PresignedUrlDto>> getDownloadUrl(@PathVariable Long id) {
+        PresignedUrlDto downloadUrl = documentService.getDownloadUrl(id);
+        return ResponseEntity.ok(ApiResponse.success("Download URL created successfully", downloadUrl));
     }
 
     @PutMapping("/{id}")
@@ -1,5 +1,7 @@
 package com.example.documents.controller;
 
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.FolderDto;
 import com.example.documents.dto.response.ApiResponse;
 import com.example.documents.service.FolderService;
@@ -21,26 +23,27 @@ public class FolderController {
 
     private final FolderService folderService;
 
+    // Listing endpoints accept ?size=&cursor= and return the cursor of the following page as nextCursor
     @GetMapping
-    public ResponseEntity<ApiResponse<List<FolderDto>>> getAllFolders() {
-        List<FolderDto> folders = folderService.getAllFolders();
-        return ResponseEntity.ok(ApiResponse.success("Folders retrieved successfully", folders));
+    public ResponseEntity<ApiResponse<List<FolderDto>>> getAllFolders(CursorPageRequest page) {
+        CursorPage<FolderDto> folders = folderService.getAllFolders(page);
+        return ResponseEntity.ok(ApiResponse.success("Folders retrieved successfully", folders.getItems(), folders.getNextCursor()));
     }
 
     @GetMapping("/department/{department}")
-    public ResponseEntity<ApiResponse<List<FolderDto>>> getFoldersByDepartment(@PathVariable String department) {
+    public ResponseEntity<ApiResponse<List<FolderDto>>> getFoldersByDepartment(@PathVariable String department, CursorPageRequest page) {
         log.info("Fetching folders for department: {}", department);
-        List<FolderDto> folders = folderService.getFoldersByDepartment(department);
-        log.info("Found {} folders for department: {}", folders.size(), department);
-        return ResponseEntity.ok(ApiResponse.success("Folders for department retrieved successfully", folders));
+        CursorPage<FolderDto> folders = folderService.getFoldersByDepartment(department, page);
+        log.info("Found {} folders for department: {}", folders.getItems().size(), department);
+        return ResponseEntity.ok(ApiResponse.success("Folders for department retrieved successfully", folders.getItems(), folders.getNextCursor()));
     }
 
     @GetMapping("/departments")
-    public ResponseEntity<ApiResponse<List<FolderDto>>> getFoldersByDepartments(@RequestParam List<String> departments) {
+    public ResponseEntity<ApiResponse<List<FolderDto>>> getFoldersByDepartments(@RequestParam List<String> departments, CursorPageRequest page) {
         log.info("Fetching folders for departments: {}", departments);
-        List<FolderDto> folders = folderService.getFoldersByDepartments(departments);
-        log.info("Found {} folders for departments: {}", folders.size(), departments);
-        return ResponseEntity.ok(ApiResponse.success("Folders for multiple departments retrieved successfully", folders));
+        CursorPage<FolderDto> folders = folderService.getFoldersByDepartments(departments, page);
+        log.info("Found {} folders for departments: {}", folders.getItems().size(), departments);
+        return ResponseEntity.ok(ApiResponse.success("Folders for multiple departments retrieved successfully", folders.getItems(), folders.getNextCursor()));
     }
 
     @GetMapping("/{id}")
@@ -56,11 +59,12 @@ public class FolderController {
     }
 
     @PostMapping("/filter")
-    public ResponseEntity<ApiResponse<List<FolderDto>>> filterFoldersByDepartments(@RequestBody Map<String, List<String>> request) {
+    public ResponseEntity<ApiResponse<List<FolderDto>>> filterFoldersByDepartments(@RequestBody Map<String, List<String>> request,
+                                                                                  CursorPageRequest page) {
         List<String> departments = request.get("departments");
         log.info("Filtering folders for departments: {}", departments);
-        List<FolderDto> folders = folderService.getFoldersByDepartments(departments);
-        return ResponseEntity.ok(ApiResponse.success("Folders filtered by departments retrieved successfully", folders));
+        CursorPage<FolderDto> folders = folderService.getFoldersByDepartments(departments, page);
+        return ResponseEntity.ok(ApiResponse.success("Folders filtered by departments retrieved successfully", folders.getItems(), folders.getNextCursor()));
     }
 
     @PutMapping("/{id}")
@@ -0,0 +1,16 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDeleteResultDto {
+    private List<String> deleted;
+    private Map<String, String> failed;
+}
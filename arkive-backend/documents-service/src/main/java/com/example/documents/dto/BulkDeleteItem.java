@@ -0,0 +1,17 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteItem {
+    private Long id;
+
+    private boolean success;
+
+    // Set when the document or its file could not be deleted
+    private String error;
+}
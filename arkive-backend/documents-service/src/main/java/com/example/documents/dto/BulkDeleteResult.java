@@ -0,0 +1,20 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteResult {
+    private int total;
+    private int succeeded;
+    private int failed;
+
+    // One entry per distinct requested id, in request order
+    private List<BulkDeleteItem> items = new ArrayList<>();
+}
@@ -0,0 +1,20 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIngestItem {
+    private String filename;
+
+    private boolean success;
+
+    // Set when the document was stored
+    private DocumentDto document;
+
+    // Set when the document could not be stored
+    private String error;
+}
@@ -0,0 +1,22 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkIngestResult {
+    private int total;
+    private int succeeded;
+    private int failed;
+    private long elapsedMillis;
+    private double documentsPerSecond;
+
+    // One entry per uploaded part, in request order
+    private List<BulkIngestItem> items = new ArrayList<>();
+}
@@ -0,0 +1,37 @@
+package com.example.documents.dto;
+
+import com.example.documents.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Paging parameters shared by every listing endpoint: {@code size} items per page and the
+ * opaque {@code cursor} returned as {@code nextCursor} by the previous page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageRequest {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 500;
+
+    private Integer size;
+    private String cursor;
+
+    public PageCursor position() {
+        return PageCursor.decode(cursor);
+    }
+
+    // Keyset paging always reads the first slice after the cursor; the slice fetches one extra row to detect a next page
+    public Pageable toPageable() {
+        int pageSize = size != null ? size : DEFAULT_SIZE;
+        if (pageSize < 1 || pageSize > MAX_SIZE) {
+            throw new BadRequestException("Page size must be between 1 and " + MAX_SIZE);
+        }
+        return PageRequest.of(0, pageSize);
+    }
+}
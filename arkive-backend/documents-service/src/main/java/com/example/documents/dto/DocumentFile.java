@@ -0,0 +1,10 @@
+package com.example.documents.dto;
+
+/**
+ * Read-only projection of a document's id and the stored file it references.
+ */
+public interface DocumentFile {
+    Long getId();
+
+    String getUrl();
+}
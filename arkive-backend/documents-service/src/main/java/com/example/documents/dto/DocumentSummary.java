@@ -0,0 +1,29 @@
+package com.example.documents.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of the document columns shown in listings, fetched in a single query
+ * without hydrating Document entities or their associations.
+ */
+public interface DocumentSummary {
+    Long getId();
+
+    String getTitle();
+
+    String getCategory();
+
+    String getDepartment();
+
+    String getUrl();
+
+    Long getFolderId();
+
+    Long getOwnerId();
+
+    String getOwnerName();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
@@ -0,0 +1,15 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileMetadataDto {
+    private String filename;
+    private String contentType;
+    private long size;
+    private String etag;
+}
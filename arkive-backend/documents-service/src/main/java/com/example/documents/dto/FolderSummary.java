@@ -0,0 +1,19 @@
+package com.example.documents.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of the folder columns shown in listings, with the department name
+ * joined in the same query.
+ */
+public interface FolderSummary {
+    Long getId();
+
+    String getTitle();
+
+    String getDepartment();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
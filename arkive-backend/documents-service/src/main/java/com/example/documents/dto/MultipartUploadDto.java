@@ -0,0 +1,15 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultipartUploadDto {
+    // Storage name of the file; parts are sent to /api/storage/multipart/{filename}/parts/{n}?uploadId=
+    private String filename;
+    private String uploadId;
+    private long partSize;
+}
@@ -0,0 +1,19 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectPageDto {
+    // In ascending key order
+    private List<StoredObjectDto> objects = new ArrayList<>();
+
+    // Where the next page starts; null on the last page
+    private String nextStartAfter;
+}
@@ -0,0 +1,45 @@
+package com.example.documents.dto;
+
+import com.example.documents.exception.BadRequestException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Keyset position in a listing ordered by (createdAt DESC, id DESC). The next page
+ * starts right after the row identified by this cursor.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageCursor {
+
+    // Sorts after every stored row while still being a valid PostgreSQL timestamp
+    public static final PageCursor FIRST_PAGE = new PageCursor(LocalDateTime.of(9999, 12, 31, 23, 59, 59), Long.MAX_VALUE);
+
+    private LocalDateTime createdAt;
+    private Long id;
+
+    public String encode() {
+        String raw = createdAt + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return FIRST_PAGE;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new BadRequestException("Invalid page cursor: " + cursor);
+        }
+    }
+}
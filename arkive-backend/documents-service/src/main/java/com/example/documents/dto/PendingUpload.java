@@ -0,0 +1,17 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A presigned upload that has not been confirmed yet, with what the client declared it would upload
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingUpload {
+    private String contentType;
+    private long size;
+    private DocumentDto document;
+}
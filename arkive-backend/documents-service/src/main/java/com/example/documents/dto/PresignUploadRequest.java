@@ -0,0 +1,30 @@
+package com.example.documents.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignUploadRequest {
+    @NotBlank(message = "Filename cannot be blank")
+    private String filename;
+
+    // The client must send this Content-Type when uploading to the presigned URL
+    @NotBlank(message = "Content type cannot be blank")
+    private String contentType;
+
+    @NotNull(message = "Size is required")
+    @Positive(message = "Size must be positive")
+    private Long size;
+
+    // Metadata of the document created once the upload is confirmed
+    @NotNull(message = "Document is required")
+    @Valid
+    private DocumentDto document;
+}
@@ -0,0 +1,18 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUrlDto {
+    // Storage name of the file the URL reads or writes; confirm uploads with it
+    private String filename;
+    private String method;
+    private String url;
+    private ZonedDateTime expiresAt;
+}
@@ -0,0 +1,16 @@
+package com.example.documents.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredObjectDto {
+    private String filename;
+    private long size;
+    private OffsetDateTime lastModified;
+}
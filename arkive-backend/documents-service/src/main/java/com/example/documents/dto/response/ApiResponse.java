@@ -1,5 +1,6 @@
 package com.example.documents.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,13 +14,22 @@ public class ApiResponse<T> {
     private boolean success;
     private String message;
     private T data;
+
+    // Only set on listing responses that have a further page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     private LocalDateTime timestamp = LocalDateTime.now();
 
     public static <T> ApiResponse<T> success(String message, T data) {
-        return new ApiResponse<>(true, message, data, LocalDateTime.now());
+        return new ApiResponse<>(true, message, data, null, LocalDateTime.now());
+    }
+
+    public static <T> ApiResponse<T> success(String message, T data, String nextCursor) {
+        return new ApiResponse<>(true, message, data, nextCursor, LocalDateTime.now());
     }
 
     public static <T> ApiResponse<T> error(String message) {
-        return new ApiResponse<>(false, message, null, LocalDateTime.now());
+        return new ApiResponse<>(false, message, null, null, LocalDateTime.now());
     }
-}
\ No newline at end of file
+}
@@ -33,7 +33,7 @@ public class GlobalExceptionHandler {
          String errorMessage = error.getDefaultMessage();
          errors.put(fieldName, errorMessage);
       });
-      ApiResponse<Map<String, String>> response = new ApiResponse<>(false, "Validation failed", errors, null);
+      ApiResponse<Map<String, String>> response = new ApiResponse<>(false, "Validation failed", errors, null, null);
       return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
    }
 
@@ -13,7 +13,8 @@ import lombok.NoArgsConstructor;
 public class Department {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "department_seq")
+    @SequenceGenerator(name = "department_seq", sequenceName = "departments_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "name", nullable = false, unique = true)
@@ -12,14 +12,20 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "documents")
+@Table(name = "documents", indexes = {
+    // Supports the keyset-paginated listings ordered by (created_at, id)
+    @Index(name = "idx_documents_created_at_id", columnList = "created_at DESC, id DESC"),
+    @Index(name = "idx_documents_folder_id", columnList = "folder_id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Document {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Pooled sequence ids let Hibernate batch inserts, which IDENTITY columns rule out
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "document_seq")
+    @SequenceGenerator(name = "document_seq", sequenceName = "documents_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "title", nullable = false)
@@ -12,14 +12,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "folders")
+@Table(name = "folders", indexes = {
+    // Supports the keyset-paginated listings ordered by (created_at, id)
+    @Index(name = "idx_folders_created_at_id", columnList = "created_at DESC, id DESC")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Folder {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "folder_seq")
+    @SequenceGenerator(name = "folder_seq", sequenceName = "folders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "title", nullable = false)
@@ -38,6 +42,8 @@ public class Folder {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
-    @OneToMany(mappedBy = "folder", cascade = CascadeType.ALL, orphanRemoval = true)
+    // No cascade: FolderServiceImpl.deleteFolder removes the documents with set-based deletes,
+    // which also release their stored files, and nothing else may delete them one by one
+    @OneToMany(mappedBy = "folder")
     private List<Document> documents = new ArrayList<>();
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.example.documents.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A stored file queued for deletion. Rows are written in the transaction that removes the
+ * file's last reference and drained by StorageCleanupWorker, so a failed or interrupted
+ * cleanup is retried instead of leaving the file orphaned.
+ */
+@Entity
+@Table(name = "storage_cleanup", indexes = {
+    @Index(name = "idx_storage_cleanup_next_attempt_at", columnList = "next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StorageCleanupTask {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "storage_cleanup_seq")
+    @SequenceGenerator(name = "storage_cleanup_seq", sequenceName = "storage_cleanup_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "filename", nullable = false)
+    private String filename;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,25 @@
+package com.example.documents.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A file in storage and the number of documents referencing it. Content-addressed uploads
+ * give identical files the same name, so one stored file can back several documents.
+ */
+@Entity
+@Table(name = "stored_files")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredFile {
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "ref_count", nullable = false)
+    private int refCount;
+}
@@ -2,13 +2,23 @@ package com.example.documents.repository;
 
 import com.example.documents.model.Department;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DepartmentRepository extends JpaRepository<Department, Long> {
     Optional<Department> findByName(String name);
-    List<Department> findByNameIn(List<String> names);
-}
\ No newline at end of file
+    List<Department> findByNameIn(Collection<String> names);
+
+    // Inserts all names in one statement and returns only the rows it created; names that already exist,
+    // or that a concurrent transaction inserts first, are skipped instead of violating the unique constraint
+    @Query(value = "INSERT INTO departments (id, name) SELECT nextval('departments_seq'), name "
+            + "FROM (SELECT DISTINCT unnest(CAST(:names AS text[])) AS name) n "
+            + "ON CONFLICT (name) DO NOTHING RETURNING id, name", nativeQuery = true)
+    List<Department> insertMissing(@Param("names") String[] names);
+}
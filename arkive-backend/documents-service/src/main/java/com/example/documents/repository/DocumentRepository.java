@@ -1,35 +1,81 @@
 package com.example.documents.repository;
 
+import com.example.documents.dto.DocumentFile;
+import com.example.documents.dto.DocumentSummary;
 import com.example.documents.model.Department;
 import com.example.documents.model.Document;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+
+    // Keyset condition for listings ordered newest first: rows strictly after the (createdAt, id) cursor
+    String AFTER_CURSOR = "(d.createdAt < :createdAt OR (d.createdAt = :createdAt AND d.id < :id))";
+    String NEWEST_FIRST = " ORDER BY d.createdAt DESC, d.id DESC";
+
+    // Columns of the DocumentSummary projection; d.folder.id reads the foreign key without joining folders
+    String SUMMARY = "d.id AS id, d.title AS title, d.category AS category, d.department AS department, d.url AS url, "
+            + "d.folder.id AS folderId, d.ownerId AS ownerId, d.ownerName AS ownerName, "
+            + "d.createdAt AS createdAt, d.updatedAt AS updatedAt";
+
     List<Document> findByFolderId(Long folderId);
-    
-    // Keep for backward compatibility
-    List<Document> findByDepartment(String department);
-    
-    List<Document> findByCategory(String category);
+
+    @Query("SELECT d.id AS id, d.url AS url FROM Document d WHERE d.id IN :ids")
+    List<DocumentFile> findFilesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Next page of distinct document files in byte order, the order storage lists its files in;
+    // served from idx_documents_url_c (see db/migration/V5__document_url_index.sql)
+    @Query(value = "SELECT DISTINCT url COLLATE \"C\" AS url FROM documents WHERE url COLLATE \"C\" > :after "
+            + "ORDER BY 1 LIMIT :limit", nativeQuery = true)
+    List<String> findFilenamesAfter(@Param("after") String after, @Param("limit") int limit);
+
+    // One DELETE for the folder's documents, plus one for their department links, instead of cascading per entity
+    @Modifying
+    @Query("DELETE FROM Document d WHERE d.folder.id = :folderId")
+    int deleteByFolderIdInBatch(@Param("folderId") Long folderId);
     
     // Find documents by department entities
     List<Document> findByDepartmentsIn(List<Department> departments);
     
+    @Query("SELECT " + SUMMARY + " FROM Document d WHERE " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPage(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT " + SUMMARY + " FROM Document d WHERE d.folder.id = :folderId AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByFolderId(@Param("folderId") Long folderId,
+                                       @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    // Keep for backward compatibility
+    @Query("SELECT " + SUMMARY + " FROM Document d WHERE d.department = :department AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByDepartment(@Param("department") String department,
+                                         @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT " + SUMMARY + " FROM Document d WHERE d.category = :category AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByCategory(@Param("category") String category,
+                                       @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
     // Find documents that belong to any of the department names
-    @Query("SELECT DISTINCT d FROM Document d JOIN d.departments dept WHERE dept.name IN :departmentNames")
-    List<Document> findByDepartmentNames(@Param("departmentNames") List<String> departmentNames);
+    @Query("SELECT DISTINCT " + SUMMARY + " FROM Document d JOIN d.departments dept WHERE dept.name IN :departmentNames AND "
+            + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByDepartmentNames(@Param("departmentNames") List<String> departmentNames,
+                                              @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
     
     // Find documents by departments and with null folder ID
-    @Query("SELECT DISTINCT d FROM Document d JOIN d.departments dept WHERE dept.name IN :departmentNames AND d.folder IS NULL")
-    List<Document> findByDepartmentNamesAndNoFolder(@Param("departmentNames") List<String> departmentNames);
+    @Query("SELECT DISTINCT " + SUMMARY + " FROM Document d JOIN d.departments dept WHERE dept.name IN :departmentNames AND d.folder IS NULL AND "
+            + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByDepartmentNamesAndNoFolder(@Param("departmentNames") List<String> departmentNames,
+                                                         @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
     
     // Find documents with null folder ID
-    @Query("SELECT d FROM Document d WHERE d.folder IS NULL")
-    List<Document> findByNoFolder();
-}
\ No newline at end of file
+    @Query("SELECT " + SUMMARY + " FROM Document d WHERE d.folder IS NULL AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<DocumentSummary> findPageByNoFolder(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+}
@@ -1,24 +1,42 @@
 package com.example.documents.repository;
 
+import com.example.documents.dto.FolderSummary;
 import com.example.documents.model.Department;
 import com.example.documents.model.Folder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface FolderRepository extends JpaRepository<Folder, Long> {
+
+    // Keyset condition for listings ordered newest first: rows strictly after the (createdAt, id) cursor
+    String AFTER_CURSOR = "(f.createdAt < :createdAt OR (f.createdAt = :createdAt AND f.id < :id))";
+    String NEWEST_FIRST = " ORDER BY f.createdAt DESC, f.id DESC";
+
+    // Selects the FolderSummary projection, joining the department name instead of loading it per folder
+    String SELECT_SUMMARY = "SELECT f.id AS id, f.title AS title, dep.name AS department, "
+            + "f.createdAt AS createdAt, f.updatedAt AS updatedAt FROM Folder f JOIN f.department dep";
+
     // Find folders by a single department entity
     List<Folder> findByDepartment(Department department);
     
+    @Query(SELECT_SUMMARY + " WHERE " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<FolderSummary> findPage(@Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+    
     // Find folders by department name with case insensitivity
-    @Query("SELECT f FROM Folder f WHERE LOWER(f.department.name) = LOWER(:departmentName)")
-    List<Folder> findByDepartmentName(@Param("departmentName") String departmentName);
+    @Query(SELECT_SUMMARY + " WHERE LOWER(dep.name) = LOWER(:departmentName) AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<FolderSummary> findPageByDepartmentName(@Param("departmentName") String departmentName,
+                                           @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
     
     // Find folders by multiple department names (for users with multiple departments)
-    @Query("SELECT DISTINCT f FROM Folder f WHERE f.department.name IN :departmentNames")
-    List<Folder> findByDepartmentNamesIn(@Param("departmentNames") List<String> departmentNames);
-}
\ No newline at end of file
+    @Query(SELECT_SUMMARY + " WHERE dep.name IN :departmentNames AND " + AFTER_CURSOR + NEWEST_FIRST)
+    Slice<FolderSummary> findPageByDepartmentNamesIn(@Param("departmentNames") List<String> departmentNames,
+                                              @Param("createdAt") LocalDateTime createdAt, @Param("id") Long id, Pageable pageable);
+}
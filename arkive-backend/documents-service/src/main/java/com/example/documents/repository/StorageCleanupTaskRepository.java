@@ -0,0 +1,45 @@
+package com.example.documents.repository;
+
+import com.example.documents.model.StorageCleanupTask;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StorageCleanupTaskRepository extends JpaRepository<StorageCleanupTask, Long> {
+
+    // Queues every file of the folder's documents that nothing references anymore, in one statement
+    @Modifying
+    @Query(value = "INSERT INTO storage_cleanup (id, filename, attempts, next_attempt_at, created_at) "
+            + "SELECT nextval('storage_cleanup_seq'), s.name, 0, now(), now() FROM stored_files s "
+            + "WHERE s.ref_count <= 0 AND s.name IN (SELECT d.url FROM documents d WHERE d.folder_id = :folderId)",
+            nativeQuery = true)
+    int enqueueUnreferencedFolderFiles(@Param("folderId") Long folderId);
+
+    // Queues the given files unless a document references them or they are queued already
+    @Modifying
+    @Query(value = "INSERT INTO storage_cleanup (id, filename, attempts, next_attempt_at, created_at) "
+            + "SELECT nextval('storage_cleanup_seq'), s.name, 0, now(), now() FROM stored_files s "
+            + "WHERE s.name = ANY(CAST(:names AS text[])) AND s.ref_count <= 0 "
+            + "AND NOT EXISTS (SELECT 1 FROM documents d WHERE d.url COLLATE \"C\" = s.name) "
+            + "AND NOT EXISTS (SELECT 1 FROM storage_cleanup c WHERE c.filename = s.name)", nativeQuery = true)
+    int enqueueUnreferenced(@Param("names") String[] names);
+
+    // Queues released files nothing references anymore, such as ones whose delete failed, unless queued already.
+    // Unlike enqueueUnreferenced the documents are not checked, as they may be deleted later in the same transaction
+    @Modifying
+    @Query(value = "INSERT INTO storage_cleanup (id, filename, attempts, next_attempt_at, created_at) "
+            + "SELECT nextval('storage_cleanup_seq'), s.name, 0, now(), now() FROM stored_files s "
+            + "WHERE s.name = ANY(CAST(:names AS text[])) AND s.ref_count <= 0 "
+            + "AND NOT EXISTS (SELECT 1 FROM storage_cleanup c WHERE c.filename = s.name)", nativeQuery = true)
+    int enqueueReleased(@Param("names") String[] names);
+
+    // Locks a batch of due tasks; SKIP LOCKED lets several instances drain the queue side by side
+    @Query(value = "SELECT * FROM storage_cleanup WHERE next_attempt_at <= now() ORDER BY id LIMIT :limit "
+            + "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StorageCleanupTask> claimDue(@Param("limit") int limit);
+}
@@ -0,0 +1,75 @@
+package com.example.documents.repository;
+
+import com.example.documents.model.StoredFile;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, String> {
+
+    // Adds one reference per occurrence of each name in a single statement and returns the new counts as
+    // (name, ref_count) rows. Names are grouped first since ON CONFLICT may only touch each row once
+    @Query(value = "INSERT INTO stored_files (name, ref_count) SELECT name, COUNT(*) "
+            + "FROM unnest(CAST(:names AS text[])) AS name GROUP BY name "
+            + "ON CONFLICT (name) DO UPDATE SET ref_count = stored_files.ref_count + EXCLUDED.ref_count "
+            + "RETURNING name, ref_count", nativeQuery = true)
+    List<Object[]> acquire(@Param("names") String[] names);
+
+    // Drops one reference and returns the remaining count, or null for a file that is not tracked.
+    // The row stays locked until the transaction ends, so concurrent acquires wait for the outcome
+    @Query(value = "UPDATE stored_files SET ref_count = ref_count - 1 WHERE name = :name RETURNING ref_count",
+            nativeQuery = true)
+    Integer release(@Param("name") String name);
+
+    // Drops one reference per occurrence of each name and returns the remaining counts as (name, ref_count) rows;
+    // untracked names return no row
+    @Query(value = "UPDATE stored_files s SET ref_count = s.ref_count - r.released "
+            + "FROM (SELECT name, COUNT(*) AS released FROM unnest(CAST(:names AS text[])) AS name GROUP BY name) r "
+            + "WHERE s.name = r.name RETURNING s.name, s.ref_count", nativeQuery = true)
+    List<Object[]> releaseAll(@Param("names") String[] names);
+
+    @Modifying
+    @Query(value = "DELETE FROM stored_files WHERE name = :name AND ref_count <= 0", nativeQuery = true)
+    int deleteUnreferenced(@Param("name") String name);
+
+    @Modifying
+    @Query(value = "DELETE FROM stored_files WHERE name = ANY(CAST(:names AS text[])) AND ref_count <= 0", nativeQuery = true)
+    int deleteAllUnreferenced(@Param("names") String[] names);
+
+    // Drops the references held by all documents of a folder in one statement
+    @Modifying
+    @Query(value = "UPDATE stored_files s SET ref_count = s.ref_count - r.released "
+            + "FROM (SELECT url AS name, COUNT(*) AS released FROM documents WHERE folder_id = :folderId GROUP BY url) r "
+            + "WHERE s.name = r.name", nativeQuery = true)
+    int releaseFolder(@Param("folderId") Long folderId);
+
+    // Gives files of the folder recorded before references were counted a row holding the documents using them
+    @Modifying
+    @Query(value = "INSERT INTO stored_files (name, ref_count) "
+            + "SELECT f.url, (SELECT COUNT(*) FROM documents d WHERE d.url COLLATE \"C\" = f.url COLLATE \"C\") "
+            + "FROM (SELECT DISTINCT url FROM documents WHERE folder_id = :folderId "
+            + "AND url IS NOT NULL AND url <> 'no-file-attached') f "
+            + "ON CONFLICT (name) DO NOTHING", nativeQuery = true)
+    int trackFolderFiles(@Param("folderId") Long folderId);
+
+    // Locks the files that are still unreferenced; a file referenced again meanwhile is left out and kept
+    @Query(value = "SELECT name FROM stored_files WHERE name = ANY(CAST(:names AS text[])) AND ref_count <= 0 "
+            + "FOR UPDATE", nativeQuery = true)
+    List<String> lockUnreferenced(@Param("names") String[] names);
+
+    // Gives files recorded before references were counted (stored_files was never backfilled) a row holding
+    // the number of documents using them; untracked files no document uses get an unreferenced row.
+    // Documents are only counted for names without a row, served from idx_documents_url_c
+    @Modifying
+    @Query(value = "INSERT INTO stored_files (name, ref_count) "
+            + "SELECT n.name, (SELECT COUNT(*) FROM documents d WHERE d.url COLLATE \"C\" = n.name COLLATE \"C\") "
+            + "FROM (SELECT DISTINCT name FROM unnest(CAST(:names AS text[])) AS name) n "
+            + "WHERE NOT EXISTS (SELECT 1 FROM stored_files s WHERE s.name = n.name) "
+            + "ON CONFLICT (name) DO NOTHING", nativeQuery = true)
+    int track(@Param("names") String[] names);
+}
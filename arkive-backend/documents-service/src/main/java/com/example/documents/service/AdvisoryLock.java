@@ -0,0 +1,51 @@
+package com.example.documents.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Postgres advisory locks, which keep a task to one instance at a time across all instances
+ * sharing the database. The lock is held by a connection kept open for the whole task, so it
+ * is also released if the instance dies partway through.
+ */
+@Component
+@RequiredArgsConstructor
+public class AdvisoryLock {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Runs the task while holding the lock with the given key, unless another session holds it.
+     *
+     * @return Whether the task ran
+     */
+    public boolean runExclusively(long key, Runnable task) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!call(connection, "SELECT pg_try_advisory_lock(?)", key)) {
+                return false;
+            }
+            try {
+                task.run();
+            } finally {
+                call(connection, "SELECT pg_advisory_unlock(?)", key);
+            }
+            return true;
+        }));
+    }
+
+    private static boolean call(Connection connection, String sql, long key) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, key);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.documents.service;
+
+import com.example.documents.model.Department;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache of department name to id. Departments are only ever added, so entries
+ * are kept until they expire or another replica broadcasts an invalidation over Redis.
+ */
+@Component
+@Slf4j
+public class DepartmentCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "documents:departments:invalidate";
+
+    private final Cache<String, Long> idsByName;
+    private final StringRedisTemplate redisTemplate;
+
+    public DepartmentCache(StringRedisTemplate redisTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${departments.cache.max-size:10000}") long maxSize,
+                           @Value("${departments.cache.ttl:30m}") Duration ttl) {
+        this.redisTemplate = redisTemplate;
+        this.idsByName = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByName, "departments");
+    }
+
+    /**
+     * Returns the cached departments among the given names. Each call gets its own
+     * Department instances, so callers may attach them to entities freely.
+     */
+    public Map<String, Department> getAll(Collection<String> names) {
+        Map<String, Department> departments = new HashMap<>();
+        idsByName.getAllPresent(names).forEach((name, id) -> departments.put(name, new Department(id, name)));
+        return departments;
+    }
+
+    public void putAll(Collection<Department> departments) {
+        departments.forEach(department -> idsByName.put(department.getName(), department.getId()));
+    }
+
+    /**
+     * Drops the names on every replica, including this one.
+     */
+    public void invalidate(Collection<String> names) {
+        idsByName.invalidateAll(names);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, String.join("\n", names));
+        } catch (Exception e) {
+            // Other replicas fall back to the TTL if the broadcast is lost
+            log.warn("Could not broadcast department cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        idsByName.invalidateAll(Arrays.asList(body.split("\n")));
+    }
+}
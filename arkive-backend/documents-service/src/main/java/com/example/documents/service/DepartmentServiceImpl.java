@@ -5,42 +5,96 @@ import com.example.documents.repository.DepartmentRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class DepartmentServiceImpl implements DepartmentService {
 
     private final DepartmentRepository departmentRepository;
+    private final DepartmentCache departmentCache;
 
     @Override
     @Transactional
     public Department findOrCreateDepartment(String departmentName) {
-        Optional<Department> existingDepartment = departmentRepository.findByName(departmentName);
-        if (existingDepartment.isPresent()) {
-            return existingDepartment.get();
-        } else {
-            Department newDepartment = new Department();
-            newDepartment.setName(departmentName);
-            return departmentRepository.save(newDepartment);
-        }
+        return findOrCreateDepartments(List.of(departmentName)).get(0);
     }
 
     @Override
     @Transactional
     public List<Department> findOrCreateDepartments(List<String> departmentNames) {
-        List<Department> departments = new ArrayList<>();
-        for (String name : departmentNames) {
-            departments.add(findOrCreateDepartment(name));
+        Set<String> names = new LinkedHashSet<>(departmentNames);
+        Map<String, Department> departmentsByName = new HashMap<>(departmentCache.getAll(names));
+        if (departmentsByName.size() == names.size()) {
+            return inOrder(names, departmentsByName);
         }
-        return departments;
+
+        List<Department> loaded = new ArrayList<>(departmentRepository.findByNameIn(
+                names.stream().filter(name -> !departmentsByName.containsKey(name)).toList()));
+        loaded.forEach(department -> departmentsByName.put(department.getName(), department));
+
+        List<String> missing = names.stream()
+                .filter(name -> !departmentsByName.containsKey(name))
+                .toList();
+        List<String> created = new ArrayList<>();
+        if (!missing.isEmpty()) {
+            departmentRepository.insertMissing(missing.toArray(new String[0])).forEach(department -> {
+                departmentsByName.put(department.getName(), department);
+                created.add(department.getName());
+            });
+
+            // Rows inserted by a concurrent transaction are not returned by the insert; read them back
+            List<String> raced = missing.stream()
+                    .filter(name -> !departmentsByName.containsKey(name))
+                    .toList();
+            if (!raced.isEmpty()) {
+                List<Department> racedDepartments = departmentRepository.findByNameIn(raced);
+                racedDepartments.forEach(department -> departmentsByName.put(department.getName(), department));
+                loaded.addAll(racedDepartments);
+            }
+        }
+
+        // Only committed rows may be cached, and replicas must drop anything they hold for a recreated name
+        afterCommit(() -> {
+            departmentCache.putAll(loaded);
+            if (!created.isEmpty()) {
+                departmentCache.invalidate(created);
+            }
+        });
+        return inOrder(names, departmentsByName);
     }
 
     @Override
     public List<Department> getAllDepartments() {
         return departmentRepository.findAll();
     }
-}
\ No newline at end of file
+
+    private List<Department> inOrder(Set<String> names, Map<String, Department> departmentsByName) {
+        List<Department> departments = new ArrayList<>();
+        for (String name : names) {
+            departments.add(departmentsByName.get(name));
+        }
+        return departments;
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -1,36 +1,68 @@
 package com.example.documents.service;
 
+import com.example.documents.dto.BulkDeleteResult;
+import com.example.documents.dto.BulkIngestResult;
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.DocumentDto;
+import com.example.documents.dto.MultipartUploadDto;
+import com.example.documents.dto.PresignUploadRequest;
+import com.example.documents.dto.PresignedUrlDto;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
 import java.util.List;
 
 public interface DocumentService {
-   List<DocumentDto> getAllDocuments();
+   // Listings are ordered newest first and paged with keyset cursors
+   CursorPage<DocumentDto> getAllDocuments(CursorPageRequest page);
 
-   List<DocumentDto> getDocumentsByFolderId(Long folderId);
+   CursorPage<DocumentDto> getDocumentsByFolderId(Long folderId, CursorPageRequest page);
 
    // Keep for backward compatibility
-   List<DocumentDto> getDocumentsByDepartment(String department);
+   CursorPage<DocumentDto> getDocumentsByDepartment(String department, CursorPageRequest page);
    
    // New method to get documents by multiple departments
-   List<DocumentDto> getDocumentsByDepartments(List<String> departmentNames);
+   CursorPage<DocumentDto> getDocumentsByDepartments(List<String> departmentNames, CursorPageRequest page);
    
    // New method to filter documents by departments and folder ID status
-   List<DocumentDto> filterDocuments(List<String> departments, Boolean noFolderId);
+   CursorPage<DocumentDto> filterDocuments(List<String> departments, Boolean noFolderId, CursorPageRequest page);
 
-   List<DocumentDto> getDocumentsByCategory(String category);
+   CursorPage<DocumentDto> getDocumentsByCategory(String category, CursorPageRequest page);
 
    DocumentDto getDocumentById(Long id);
 
    DocumentDto createDocument(DocumentDto documentDto);
    
    DocumentDto uploadDocument(MultipartFile file, DocumentDto documentDto);
+
+   // Pipes a raw file body straight through to storage, so the file is never spooled to disk or held in memory.
+   // A SHA-256 given with the content is checked by storage, which stores content it already has only once
+   DocumentDto streamUploadDocument(InputStream content, String originalFilename, String contentType,
+                                    long contentLength, String sha256, DocumentDto documentDto);
+
+   // Stores each file as a document sharing the metadata of the template, titled after its filename
+   BulkIngestResult bulkUploadDocuments(List<MultipartFile> files, DocumentDto template);
    
-   ResponseEntity<byte[]> downloadDocument(Long id);
+   ResponseEntity<Resource> downloadDocument(Long id, HttpHeaders requestHeaders);
+
+   // Direct uploads: the client PUTs the file to the presigned URL, then confirms it to create the document
+   PresignedUrlDto presignUpload(PresignUploadRequest request);
+
+   // Resumable uploads: the client sends parts to storage-service, completes there, then confirms the upload
+   MultipartUploadDto initiateMultipartUpload(PresignUploadRequest request);
+
+   DocumentDto confirmUpload(String filename);
+
+   PresignedUrlDto getDownloadUrl(Long id);
 
    DocumentDto updateDocument(Long id, DocumentDto documentDto);
 
    void deleteDocument(Long id);
+
+   // Deletes the documents with set-based statements and their unshared files in batched storage calls
+   BulkDeleteResult bulkDeleteDocuments(List<Long> ids);
 }
\ No newline at end of file
@@ -1,7 +1,20 @@
 package com.example.documents.service;
 
 import com.example.documents.client.StorageClient;
+import com.example.documents.dto.BulkDeleteItem;
+import com.example.documents.dto.BulkDeleteResult;
+import com.example.documents.dto.BulkIngestItem;
+import com.example.documents.dto.BulkIngestResult;
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.DocumentDto;
+import com.example.documents.dto.DocumentSummary;
+import com.example.documents.dto.FileMetadataDto;
+import com.example.documents.dto.MultipartUploadDto;
+import com.example.documents.dto.PendingUpload;
+import com.example.documents.dto.PresignUploadRequest;
+import com.example.documents.dto.PresignedUrlDto;
+import com.example.documents.dto.PageCursor;
 import com.example.documents.exception.BadRequestException;
 import com.example.documents.exception.ResourceNotFoundException;
 import com.example.documents.model.Department;
@@ -11,16 +24,33 @@ import com.example.documents.repository.DocumentRepository;
 import com.example.documents.repository.FolderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,80 +58,92 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DocumentServiceImpl implements DocumentService {
 
+   private static final MediaType MULTIPART_BYTERANGES = MediaType.parseMediaType("multipart/byteranges");
+
+   private static final List<String> RELAYED_DOWNLOAD_HEADERS = List.of(
+         HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_RANGE, HttpHeaders.ACCEPT_RANGES,
+         HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED);
+
    private final DocumentRepository documentRepository;
    private final FolderRepository folderRepository;
    private final StorageClient storageClient;
    private final DepartmentService departmentService;
+   private final ThreadPoolTaskExecutor storageUploadExecutor;
+   private final PendingUploadStore pendingUploadStore;
+   private final StoredFileReferences storedFileReferences;
+   private final TransactionTemplate transactionTemplate;
+
+   @Value("${documents.bulk.max-files:1000}")
+   private int bulkMaxFiles;
+
+   @Value("${documents.stream.max-file-size:1GB}")
+   private DataSize streamMaxFileSize;
+
+   @Value("${documents.presign.confirm-window:1h}")
+   private Duration presignConfirmWindow;
+
+   @Value("${documents.multipart.confirm-window:24h}")
+   private Duration multipartConfirmWindow;
 
    @Override
-   public List<DocumentDto> getAllDocuments() {
-      List<Document> documents = documentRepository.findAll();
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+   public CursorPage<DocumentDto> getAllDocuments(CursorPageRequest page) {
+      PageCursor position = page.position();
+      return toPage(documentRepository.findPage(position.getCreatedAt(), position.getId(), page.toPageable()));
    }
 
    @Override
-   public List<DocumentDto> getDocumentsByFolderId(Long folderId) {
+   public CursorPage<DocumentDto> getDocumentsByFolderId(Long folderId, CursorPageRequest page) {
       if (!folderRepository.existsById(folderId)) {
          throw new ResourceNotFoundException("Folder not found with id: " + folderId);
       }
 
-      List<Document> documents = documentRepository.findByFolderId(folderId);
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+      PageCursor position = page.position();
+      return toPage(documentRepository.findPageByFolderId(folderId, position.getCreatedAt(), position.getId(), page.toPageable()));
    }
 
    @Override
-   public List<DocumentDto> getDocumentsByDepartment(String department) {
-      List<Document> documents = documentRepository.findByDepartment(department);
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+   public CursorPage<DocumentDto> getDocumentsByDepartment(String department, CursorPageRequest page) {
+      PageCursor position = page.position();
+      return toPage(documentRepository.findPageByDepartment(department, position.getCreatedAt(), position.getId(), page.toPageable()));
    }
    
    @Override
-   public List<DocumentDto> getDocumentsByDepartments(List<String> departmentNames) {
+   public CursorPage<DocumentDto> getDocumentsByDepartments(List<String> departmentNames, CursorPageRequest page) {
       if (departmentNames == null || departmentNames.isEmpty()) {
-          return new ArrayList<>();
+          return new CursorPage<>();
       }
       
-      List<Document> documents = documentRepository.findByDepartmentNames(departmentNames);
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+      PageCursor position = page.position();
+      return toPage(documentRepository.findPageByDepartmentNames(departmentNames, position.getCreatedAt(), position.getId(), page.toPageable()));
    }
 
    @Override
-   public List<DocumentDto> getDocumentsByCategory(String category) {
-      List<Document> documents = documentRepository.findByCategory(category);
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+   public CursorPage<DocumentDto> getDocumentsByCategory(String category, CursorPageRequest page) {
+      PageCursor position = page.position();
+      return toPage(documentRepository.findPageByCategory(category, position.getCreatedAt(), position.getId(), page.toPageable()));
    }
    
    @Override
-   public List<DocumentDto> filterDocuments(List<String> departments, Boolean noFolderId) {
-      List<Document> documents;
+   public CursorPage<DocumentDto> filterDocuments(List<String> departments, Boolean noFolderId, CursorPageRequest page) {
+      PageCursor position = page.position();
+      Pageable pageable = page.toPageable();
+      Slice<DocumentSummary> documents;
       
       if (departments != null && !departments.isEmpty() && noFolderId != null && noFolderId) {
          // Filter documents by departments and no folder ID
-         documents = documentRepository.findByDepartmentNamesAndNoFolder(departments);
+         documents = documentRepository.findPageByDepartmentNamesAndNoFolder(departments, position.getCreatedAt(), position.getId(), pageable);
       } else if (departments != null && !departments.isEmpty()) {
          // Filter documents by departments only
-         documents = documentRepository.findByDepartmentNames(departments);
+         documents = documentRepository.findPageByDepartmentNames(departments, position.getCreatedAt(), position.getId(), pageable);
       } else if (noFolderId != null && noFolderId) {
          // Filter documents by no folder ID only
-         documents = documentRepository.findByNoFolder();
+         documents = documentRepository.findPageByNoFolder(position.getCreatedAt(), position.getId(), pageable);
       } else {
          // No filters applied, return all documents
-         documents = documentRepository.findAll();
+         documents = documentRepository.findPage(position.getCreatedAt(), position.getId(), pageable);
       }
       
-      return documents.stream()
-            .map(this::mapToDto)
-            .collect(Collectors.toList());
+      return toPage(documents);
    }
 
    @Override
@@ -142,57 +184,144 @@ public class DocumentServiceImpl implements DocumentService {
          document.setFolder(folder);
       }
 
+      // The URL may name a file that is already stored, which this document now also references
+      if (!document.getUrl().equals("no-file-attached")) {
+         requireNotContentAddressed(document.getUrl());
+         storedFileReferences.acquire(List.of(document.getUrl()));
+      }
+
       Document savedDocument = documentRepository.save(document);
       return mapToDto(savedDocument);
    }
    
    @Override
-   @Transactional
    public DocumentDto uploadDocument(MultipartFile file, DocumentDto documentDto) {
+      // Not @Transactional: the upload below must not hold a database connection for as long as the file takes to send
       if (file == null || file.isEmpty()) {
          throw new BadRequestException("File cannot be empty");
       }
       
-      Document document = mapToEntity(documentDto);
+      Document document = prepareUploadedDocument(documentDto);
       
-      // For backward compatibility, if departments list is empty but department string is set
-      if ((documentDto.getDepartments() == null || documentDto.getDepartments().isEmpty()) 
-          && documentDto.getDepartment() != null) {
-          documentDto.setDepartments(List.of(documentDto.getDepartment()));
+      String filename;
+      try {
+         // Upload the file to storage service
+         filename = storageClient.uploadFile(file);
+         log.info("File uploaded successfully with name: {}", filename);
+      } catch (Exception e) {
+         log.error("Error uploading file: {}", e.getMessage());
+         throw new BadRequestException("Failed to upload document: " + e.getMessage());
       }
       
-      // Set the departments for the document
-      if (documentDto.getDepartments() != null && !documentDto.getDepartments().isEmpty()) {
-          List<Department> departments = departmentService.findOrCreateDepartments(documentDto.getDepartments());
-          document.getDepartments().addAll(departments);
+      return saveUploadedDocument(document, filename);
+   }
+   
+   @Override
+   public DocumentDto streamUploadDocument(InputStream content, String originalFilename, String contentType,
+                                           long contentLength, String sha256, DocumentDto documentDto) {
+      if (contentLength <= 0) {
+         throw new BadRequestException("File cannot be empty");
       }
-      
-      // Only set folder if folderId is provided
-      if (documentDto.getFolderId() != null) {
-         // Check if folder exists
-         Folder folder = folderRepository.findById(documentDto.getFolderId())
-               .orElseThrow(() -> new BadRequestException("Folder not found with id: " + documentDto.getFolderId()));
-         document.setFolder(folder);
+      if (contentLength > streamMaxFileSize.toBytes()) {
+         throw new BadRequestException("File exceeds the maximum upload size of " + streamMaxFileSize);
       }
-            
+      
+      Document document = prepareUploadedDocument(documentDto);
+      
+      String filename;
       try {
-         // Upload the file to storage service
-         String filename = storageClient.uploadFile(file);
-         log.info("File uploaded successfully with name: {}", filename);
-         
-         // Set the document URL to the uploaded file's URL
-         document.setUrl(filename);
-         
-         Document savedDocument = documentRepository.save(document);
-         return mapToDto(savedDocument);
+         // The request body is piped through to storage as it arrives; storage hashes it and reuses
+         // an existing file with the same content, so content is only shared with a caller that sent it
+         filename = storageClient.uploadFile(content, originalFilename, contentType, contentLength, sha256);
+         log.info("File streamed successfully with name: {}", filename);
       } catch (Exception e) {
-         log.error("Error uploading file: {}", e.getMessage());
+         log.error("Error streaming file: {}", e.getMessage());
          throw new BadRequestException("Failed to upload document: " + e.getMessage());
       }
+      
+      return saveUploadedDocument(document, filename);
    }
    
    @Override
-   public ResponseEntity<byte[]> downloadDocument(Long id) {
+   public BulkIngestResult bulkUploadDocuments(List<MultipartFile> files, DocumentDto template) {
+      if (files == null || files.isEmpty()) {
+         throw new BadRequestException("At least one file is required");
+      }
+      if (files.size() > bulkMaxFiles) {
+         throw new BadRequestException("A bulk upload may contain at most " + bulkMaxFiles + " files");
+      }
+      long started = System.nanoTime();
+
+      // Departments and folder are shared by every document, so resolve them once up front
+      List<Department> departments = template.getDepartments() == null || template.getDepartments().isEmpty()
+            ? List.of()
+            : departmentService.findOrCreateDepartments(template.getDepartments());
+      Folder folder = null;
+      if (template.getFolderId() != null) {
+         folder = folderRepository.findById(template.getFolderId())
+               .orElseThrow(() -> new BadRequestException("Folder not found with id: " + template.getFolderId()));
+      }
+
+      // Stream the files to storage in parallel; the shared executor bounds how many run at once
+      List<CompletableFuture<String>> uploads = files.stream()
+            .map(file -> file.isEmpty()
+                  ? CompletableFuture.<String>failedFuture(new BadRequestException("File cannot be empty"))
+                  : CompletableFuture.supplyAsync(() -> storageClient.uploadFile(file), storageUploadExecutor))
+            .toList();
+
+      List<BulkIngestItem> items = new ArrayList<>();
+      List<Document> documents = new ArrayList<>();
+      List<BulkIngestItem> stored = new ArrayList<>();
+      for (int i = 0; i < files.size(); i++) {
+         MultipartFile file = files.get(i);
+         BulkIngestItem item = new BulkIngestItem(file.getOriginalFilename(), false, null, null);
+         items.add(item);
+         try {
+            String filename = uploads.get(i).join();
+            Document document = mapToEntity(template);
+            document.setTitle(file.getOriginalFilename());
+            document.setUrl(filename);
+            document.getDepartments().addAll(departments);
+            document.setFolder(folder);
+            documents.add(document);
+            stored.add(item);
+         } catch (CompletionException e) {
+            log.error("Error uploading file {}: {}", file.getOriginalFilename(), e.getCause().getMessage());
+            item.setError("Failed to upload document: " + e.getCause().getMessage());
+         }
+      }
+
+      // Record all uploaded documents in one transaction, inserted in JDBC batches, along with their
+      // file references, so a failed save rolls the references back too
+      if (!documents.isEmpty()) {
+         List<String> filenames = documents.stream().map(Document::getUrl).toList();
+         try {
+            List<Document> savedDocuments = transactionTemplate.execute(status -> {
+               storedFileReferences.acquire(filenames);
+               return documentRepository.saveAll(documents);
+            });
+            for (int i = 0; i < savedDocuments.size(); i++) {
+               stored.get(i).setSuccess(true);
+               stored.get(i).setDocument(mapToDto(savedDocuments.get(i)));
+            }
+         } catch (RuntimeException e) {
+            log.error("Error saving bulk uploaded documents: {}", e.getMessage());
+            stored.forEach(item -> item.setError("Failed to save document: " + e.getMessage()));
+            // None of the documents were recorded, so their files would be orphaned in storage
+            discardStoredFiles(filenames);
+         }
+      }
+
+      long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+      int succeeded = (int) items.stream().filter(BulkIngestItem::isSuccess).count();
+      double documentsPerSecond = succeeded * 1000.0 / elapsedMillis;
+      log.info("Bulk upload stored {} of {} documents in {} ms ({} docs/sec)",
+            succeeded, files.size(), elapsedMillis, String.format("%.1f", documentsPerSecond));
+      return new BulkIngestResult(files.size(), succeeded, files.size() - succeeded, elapsedMillis, documentsPerSecond, items);
+   }
+
+   @Override
+   public ResponseEntity<Resource> downloadDocument(Long id, HttpHeaders requestHeaders) {
       Document document = documentRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Document not found with id: " + id));
             
@@ -204,21 +333,129 @@ public class DocumentServiceImpl implements DocumentService {
       }
       
       try {
-         // Get the file bytes from the storage service
-         byte[] fileBytes = storageClient.downloadFile(filename);
+         // Stream the file (or the requested ranges of it) from the storage service straight through to the client
+         ResponseEntity<Resource> file = storageClient.downloadFile(filename, requestHeaders);
+         HttpHeaders fileHeaders = file.getHeaders();
          
          // Set up the response headers
          HttpHeaders headers = new HttpHeaders();
-         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+         MediaType contentType = fileHeaders.getContentType();
+         if (contentType != null && contentType.isCompatibleWith(MULTIPART_BYTERANGES)) {
+            headers.setContentType(contentType);
+         } else {
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+         }
          headers.setContentDispositionFormData("attachment", filename);
+         for (String header : RELAYED_DOWNLOAD_HEADERS) {
+            if (fileHeaders.containsKey(header)) {
+               headers.put(header, fileHeaders.get(header));
+            }
+         }
          
-         return new ResponseEntity<>(fileBytes, headers, HttpStatus.OK);
+         return new ResponseEntity<>(file.getBody(), headers, file.getStatusCode());
       } catch (Exception e) {
          log.error("Error downloading file: {}", e.getMessage());
          throw new ResourceNotFoundException("Failed to download document: " + e.getMessage());
       }
    }
 
+   @Override
+   public PresignedUrlDto presignUpload(PresignUploadRequest request) {
+      DocumentDto documentDto = request.getDocument();
+      requireFolderIfSet(documentDto);
+      
+      PresignedUrlDto uploadUrl;
+      try {
+         uploadUrl = storageClient.presignUpload(request.getFilename(), request.getSize());
+      } catch (Exception e) {
+         log.error("Error presigning upload: {}", e.getMessage());
+         throw new BadRequestException("Failed to presign upload: " + e.getMessage());
+      }
+      
+      // The pending entry outlives the URL so an upload finishing just before expiry can still be confirmed
+      Duration ttl = Duration.between(ZonedDateTime.now(), uploadUrl.getExpiresAt()).plus(presignConfirmWindow);
+      pendingUploadStore.save(uploadUrl.getFilename(),
+            new PendingUpload(request.getContentType(), request.getSize(), documentDto), ttl);
+      return uploadUrl;
+   }
+   
+   @Override
+   public MultipartUploadDto initiateMultipartUpload(PresignUploadRequest request) {
+      DocumentDto documentDto = request.getDocument();
+      requireFolderIfSet(documentDto);
+      
+      MultipartUploadDto upload;
+      try {
+         upload = storageClient.initiateMultipartUpload(request.getFilename(), request.getContentType());
+      } catch (Exception e) {
+         log.error("Error starting multipart upload: {}", e.getMessage());
+         throw new BadRequestException("Failed to start upload: " + e.getMessage());
+      }
+      
+      // Confirmed through confirmUpload like a presigned upload, once the parts have been completed
+      pendingUploadStore.save(upload.getFilename(),
+            new PendingUpload(request.getContentType(), request.getSize(), documentDto), multipartConfirmWindow);
+      return upload;
+   }
+   
+   @Override
+   public DocumentDto confirmUpload(String filename) {
+      PendingUpload pending = pendingUploadStore.find(filename)
+            .orElseThrow(() -> new ResourceNotFoundException("No pending upload found for: " + filename));
+      
+      FileMetadataDto stored;
+      try {
+         stored = storageClient.getFileMetadata(filename);
+      } catch (Exception e) {
+         log.error("Error verifying upload: {}", e.getMessage());
+         throw new BadRequestException("Failed to verify upload: " + e.getMessage());
+      }
+      if (stored == null) {
+         // The client may retry once the upload has finished
+         throw new BadRequestException("File has not been uploaded yet: " + filename);
+      }
+      
+      // Only the first confirmation goes on to create the document
+      if (!pendingUploadStore.remove(filename)) {
+         throw new ResourceNotFoundException("No pending upload found for: " + filename);
+      }
+      
+      // A presigned URL cannot enforce what is uploaded, so anything other than the declared file is discarded
+      if (stored.getSize() != pending.getSize() || !sameMediaType(stored.getContentType(), pending.getContentType())) {
+         log.warn("Discarding upload {}: expected {} bytes of {}, got {} bytes of {}", filename,
+               pending.getSize(), pending.getContentType(), stored.getSize(), stored.getContentType());
+         deleteStoredFile(filename);
+         throw new BadRequestException("Uploaded file does not match the declared size and content type");
+      }
+      
+      Document document;
+      try {
+         document = prepareUploadedDocument(pending.getDocument());
+      } catch (RuntimeException e) {
+         deleteStoredFile(filename);
+         throw e;
+      }
+      return saveUploadedDocument(document, filename);
+   }
+   
+   @Override
+   public PresignedUrlDto getDownloadUrl(Long id) {
+      Document document = documentRepository.findById(id)
+            .orElseThrow(() -> new ResourceNotFoundException("Document not found with id: " + id));
+      
+      String filename = document.getUrl();
+      if (filename == null || filename.equals("no-file-attached")) {
+         throw new ResourceNotFoundException("No file attached to this document");
+      }
+      
+      try {
+         return storageClient.presignDownload(filename);
+      } catch (Exception e) {
+         log.error("Error presigning download: {}", e.getMessage());
+         throw new ResourceNotFoundException("Failed to presign download: " + e.getMessage());
+      }
+   }
+
    @Override
    @Transactional
    public DocumentDto updateDocument(Long id, DocumentDto documentDto) {
@@ -265,7 +502,15 @@ public class DocumentServiceImpl implements DocumentService {
       }
 
       // Only update URL if provided and not empty
-      if (documentDto.getUrl() != null && !documentDto.getUrl().isEmpty()) {
+      if (documentDto.getUrl() != null && !documentDto.getUrl().isEmpty() && !documentDto.getUrl().equals(document.getUrl())) {
+         String previousUrl = document.getUrl();
+         if (!documentDto.getUrl().equals("no-file-attached")) {
+            requireNotContentAddressed(documentDto.getUrl());
+            storedFileReferences.acquire(List.of(documentDto.getUrl()));
+         }
+         if (previousUrl != null && !previousUrl.equals("no-file-attached")) {
+            storedFileReferences.release(previousUrl);
+         }
          document.setUrl(documentDto.getUrl());
       }
 
@@ -279,25 +524,181 @@ public class DocumentServiceImpl implements DocumentService {
       Document document = documentRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Document not found with id: " + id));
             
-      // Delete the file from storage if it exists
+      // Delete the file from storage unless other documents still reference it
       String filename = document.getUrl();
       if (filename != null && !filename.equals("no-file-attached")) {
-         try {
-            boolean deleted = storageClient.deleteFile(filename);
-            if (deleted) {
-               log.info("Successfully deleted file from storage: {}", filename);
-            } else {
-               log.warn("Could not delete file from storage: {}", filename);
-            }
-         } catch (Exception e) {
-            log.error("Error deleting file from storage: {}", e.getMessage());
-            // Continue with document deletion even if file deletion fails
-         }
+         storedFileReferences.release(filename);
       }
       
       documentRepository.deleteById(id);
    }
 
+   @Override
+   @Transactional
+   public BulkDeleteResult bulkDeleteDocuments(List<Long> ids) {
+      if (ids == null || ids.isEmpty()) {
+         throw new BadRequestException("At least one document id is required");
+      }
+      if (ids.size() > bulkMaxFiles) {
+         throw new BadRequestException("A bulk delete may contain at most " + bulkMaxFiles + " documents");
+      }
+      List<Long> requested = ids.stream().distinct().toList();
+
+      Map<Long, String> files = new HashMap<>();
+      documentRepository.findFilesByIdIn(requested).forEach(file -> files.put(file.getId(), file.getUrl()));
+
+      // Files still referenced by other documents are kept; the rest go in batched storage calls, and any that
+      // cannot be deleted are retried in the background. Released while the documents still exist, as files
+      // without a count are counted from them
+      List<String> attached = files.values().stream()
+            .filter(url -> url != null && !url.equals("no-file-attached"))
+            .toList();
+      int queuedFiles = storedFileReferences.releaseAll(attached);
+      if (!files.isEmpty()) {
+         // One DELETE for the rows; Hibernate clears their document_departments links in one more
+         documentRepository.deleteAllByIdInBatch(files.keySet());
+      }
+
+      List<BulkDeleteItem> items = new ArrayList<>();
+      for (Long id : requested) {
+         if (!files.containsKey(id)) {
+            items.add(new BulkDeleteItem(id, false, "Document not found with id: " + id));
+         } else {
+            items.add(new BulkDeleteItem(id, true, null));
+         }
+      }
+      int succeeded = (int) items.stream().filter(BulkDeleteItem::isSuccess).count();
+      log.info("Bulk delete removed {} of {} documents, {} files queued for cleanup", files.size(), requested.size(), queuedFiles);
+      return new BulkDeleteResult(requested.size(), succeeded, requested.size() - succeeded, items);
+   }
+
+   private Document prepareUploadedDocument(DocumentDto documentDto) {
+      Document document = mapToEntity(documentDto);
+      
+      // For backward compatibility, if departments list is empty but department string is set
+      if ((documentDto.getDepartments() == null || documentDto.getDepartments().isEmpty()) 
+          && documentDto.getDepartment() != null) {
+          documentDto.setDepartments(List.of(documentDto.getDepartment()));
+      }
+      
+      // Set the departments for the document
+      if (documentDto.getDepartments() != null && !documentDto.getDepartments().isEmpty()) {
+          List<Department> departments = departmentService.findOrCreateDepartments(documentDto.getDepartments());
+          document.getDepartments().addAll(departments);
+      }
+      
+      // Only set folder if folderId is provided
+      if (documentDto.getFolderId() != null) {
+         // Check if folder exists
+         Folder folder = folderRepository.findById(documentDto.getFolderId())
+               .orElseThrow(() -> new BadRequestException("Folder not found with id: " + documentDto.getFolderId()));
+         document.setFolder(folder);
+      }
+      return document;
+   }
+   
+   private DocumentDto saveUploadedDocument(Document document, String filename) {
+      // Set the document URL to the uploaded file's URL
+      document.setUrl(filename);
+      try {
+         // Recording the document and its file reference is a short transaction of its own
+         Document savedDocument = transactionTemplate.execute(status -> {
+            storedFileReferences.acquire(List.of(filename));
+            return documentRepository.save(document);
+         });
+         return mapToDto(savedDocument);
+      } catch (RuntimeException e) {
+         log.error("Error saving uploaded document: {}", e.getMessage());
+         // The document was not recorded, so its file would be orphaned in storage unless shared
+         discardStoredFiles(List.of(filename));
+         throw e;
+      }
+   }
+   
+   // Fails before the client uploads anything if the document could not be created afterwards
+   private void requireFolderIfSet(DocumentDto documentDto) {
+      if (documentDto.getFolderId() != null && !folderRepository.existsById(documentDto.getFolderId())) {
+         throw new BadRequestException("Folder not found with id: " + documentDto.getFolderId());
+      }
+   }
+   
+   // Content-addressed files are named after their content, so a client naming one could attach a file someone
+   // else uploaded, or learn whether some content is stored; only uploads of the content itself may attach them
+   private static void requireNotContentAddressed(String url) {
+      if (url.startsWith(StoredFileReferences.CONTENT_ADDRESSED_PREFIX)) {
+         throw new BadRequestException("Content-addressed files can only be attached by uploading them");
+      }
+   }
+   
+   private static boolean sameMediaType(String actual, String expected) {
+      try {
+         return actual != null && MediaType.parseMediaType(actual).equalsTypeAndSubtype(MediaType.parseMediaType(expected));
+      } catch (InvalidMediaTypeException e) {
+         return false;
+      }
+   }
+   
+   private void deleteStoredFile(String filename) {
+      if (!storageClient.deleteFile(filename)) {
+         log.warn("Could not delete file from storage: {}", filename);
+      }
+   }
+   
+   // Removes files just uploaded for documents that were not recorded, whose references were rolled back with
+   // them. A content-addressed file may be shared with existing documents, so it is only queued for cleanup,
+   // which skips it if it is referenced. The rest are deleted in batched storage calls, without the database
+   private void discardStoredFiles(Collection<String> filenames) {
+      List<String> shared = new ArrayList<>();
+      List<String> unshared = new ArrayList<>();
+      for (String filename : new LinkedHashSet<>(filenames)) {
+         if (filename.startsWith(StoredFileReferences.CONTENT_ADDRESSED_PREFIX)) {
+            shared.add(filename);
+         } else {
+            unshared.add(filename);
+         }
+      }
+      if (!unshared.isEmpty()) {
+         storageClient.deleteFiles(unshared)
+               .forEach((filename, reason) -> log.warn("Could not delete file from storage: {} ({})", filename, reason));
+      }
+      if (shared.isEmpty()) {
+         return;
+      }
+      try {
+         storedFileReferences.queueOrphans(shared);
+      } catch (RuntimeException e) {
+         log.warn("Could not queue uploaded files for cleanup: {}", shared, e);
+      }
+   }
+
+   private CursorPage<DocumentDto> toPage(Slice<DocumentSummary> slice) {
+      List<DocumentDto> items = slice.getContent().stream()
+            .map(this::mapToDto)
+            .collect(Collectors.toList());
+      
+      String nextCursor = null;
+      if (slice.hasNext()) {
+         DocumentSummary last = slice.getContent().get(slice.getNumberOfElements() - 1);
+         nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+      }
+      return new CursorPage<>(items, nextCursor);
+   }
+
+   private DocumentDto mapToDto(DocumentSummary document) {
+      DocumentDto documentDto = new DocumentDto();
+      documentDto.setId(document.getId());
+      documentDto.setTitle(document.getTitle());
+      documentDto.setCategory(document.getCategory());
+      documentDto.setDepartment(document.getDepartment());
+      documentDto.setUrl(document.getUrl());
+      documentDto.setOwnerId(document.getOwnerId());
+      documentDto.setOwnerName(document.getOwnerName());
+      documentDto.setFolderId(document.getFolderId());
+      documentDto.setCreatedAt(document.getCreatedAt());
+      documentDto.setUpdatedAt(document.getUpdatedAt());
+      return documentDto;
+   }
+
    private DocumentDto mapToDto(Document document) {
       DocumentDto documentDto = new DocumentDto();
       documentDto.setId(document.getId());
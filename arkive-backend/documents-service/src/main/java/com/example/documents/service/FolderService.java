@@ -1,17 +1,20 @@
 package com.example.documents.service;
 
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.FolderDto;
 
 import java.util.List;
 
 public interface FolderService {
-   List<FolderDto> getAllFolders();
+   // Listings are ordered newest first and paged with keyset cursors
+   CursorPage<FolderDto> getAllFolders(CursorPageRequest page);
    
    // Get folders by a single department name
-   List<FolderDto> getFoldersByDepartment(String departmentName);
+   CursorPage<FolderDto> getFoldersByDepartment(String departmentName, CursorPageRequest page);
    
    // Method to get folders by multiple departments (for users with multiple departments)
-   List<FolderDto> getFoldersByDepartments(List<String> departmentNames);
+   CursorPage<FolderDto> getFoldersByDepartments(List<String> departmentNames, CursorPageRequest page);
 
    FolderDto getFolderById(Long id);
 
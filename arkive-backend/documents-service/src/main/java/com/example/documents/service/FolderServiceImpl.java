@@ -1,17 +1,21 @@
 package com.example.documents.service;
 
+import com.example.documents.dto.CursorPage;
+import com.example.documents.dto.CursorPageRequest;
 import com.example.documents.dto.FolderDto;
+import com.example.documents.dto.FolderSummary;
+import com.example.documents.dto.PageCursor;
 import com.example.documents.exception.ResourceNotFoundException;
 import com.example.documents.model.Department;
 import com.example.documents.model.Folder;
+import com.example.documents.repository.DocumentRepository;
 import com.example.documents.repository.FolderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.time.LocalDateTime;
@@ -23,45 +27,41 @@ public class FolderServiceImpl implements FolderService {
 
     private final FolderRepository folderRepository;
     private final DepartmentService departmentService;
+    private final DocumentRepository documentRepository;
+    private final StoredFileReferences storedFileReferences;
 
     @Override
-    public List<FolderDto> getAllFolders() {
-        List<Folder> folders = folderRepository.findAll();
-        return folders.stream()
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+    public CursorPage<FolderDto> getAllFolders(CursorPageRequest page) {
+        PageCursor position = page.position();
+        return toPage(folderRepository.findPage(position.getCreatedAt(), position.getId(), page.toPageable()));
     }
    
     @Override
-    public List<FolderDto> getFoldersByDepartment(String departmentName) {
+    public CursorPage<FolderDto> getFoldersByDepartment(String departmentName, CursorPageRequest page) {
         if (departmentName == null || departmentName.isEmpty()) {
-            return new ArrayList<>();
+            return new CursorPage<>();
         }
       
-        List<Folder> folders = folderRepository.findByDepartmentName(departmentName);
-        log.info("Found {} folders for department: {}", folders.size(), departmentName);
+        PageCursor position = page.position();
+        Slice<FolderSummary> folders = folderRepository.findPageByDepartmentName(departmentName, position.getCreatedAt(), position.getId(), page.toPageable());
+        log.info("Found {} folders for department: {}", folders.getNumberOfElements(), departmentName);
       
-        return folders.stream()
-                .sorted(Comparator.comparing(Folder::getCreatedAt).reversed())
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return toPage(folders);
     }
    
     @Override
-    public List<FolderDto> getFoldersByDepartments(List<String> departmentNames) {
+    public CursorPage<FolderDto> getFoldersByDepartments(List<String> departmentNames, CursorPageRequest page) {
         if (departmentNames == null || departmentNames.isEmpty()) {
-            return new ArrayList<>();
+            return new CursorPage<>();
         }
       
         log.info("Searching for folders with departments: {}", departmentNames);
       
-        List<Folder> folders = folderRepository.findByDepartmentNamesIn(departmentNames);
-        log.info("Found {} folders for departments: {}", folders.size(), departmentNames);
+        PageCursor position = page.position();
+        Slice<FolderSummary> folders = folderRepository.findPageByDepartmentNamesIn(departmentNames, position.getCreatedAt(), position.getId(), page.toPageable());
+        log.info("Found {} folders for departments: {}", folders.getNumberOfElements(), departmentNames);
       
-        return folders.stream()
-                .sorted(Comparator.comparing(Folder::getCreatedAt).reversed())
-                .map(this::mapToDto)
-                .collect(Collectors.toList());
+        return toPage(folders);
     }
 
     @Override
@@ -133,7 +133,30 @@ public class FolderServiceImpl implements FolderService {
         if (!folderRepository.existsById(id)) {
             throw new ResourceNotFoundException("Folder not found with id: " + id);
         }
-        folderRepository.deleteById(id);
+        // Set-based deletes instead of the entity cascade, which would load and delete every document one by one.
+        // Files are released first and removed from storage afterwards by the cleanup worker
+        int queued = storedFileReferences.releaseFolder(id);
+        int documents = documentRepository.deleteByFolderIdInBatch(id);
+        folderRepository.deleteAllByIdInBatch(List.of(id));
+        log.info("Deleted folder {} with {} documents, {} files queued for cleanup", id, documents, queued);
+    }
+
+    private CursorPage<FolderDto> toPage(Slice<FolderSummary> slice) {
+        List<FolderDto> items = slice.getContent().stream()
+                .map(this::mapToDto)
+                .collect(Collectors.toList());
+
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            FolderSummary last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    private FolderDto mapToDto(FolderSummary folder) {
+        return new FolderDto(folder.getId(), folder.getTitle(), folder.getDepartment(),
+                folder.getCreatedAt(), folder.getUpdatedAt());
     }
 
     private FolderDto mapToDto(Folder folder) {
@@ -0,0 +1,53 @@
+package com.example.documents.service;
+
+import com.example.documents.dto.PendingUpload;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Presigned uploads awaiting confirmation, kept in Redis so any replica can confirm them.
+ * Entries expire on their own, so abandoned uploads leave nothing behind here.
+ */
+@Component
+@RequiredArgsConstructor
+public class PendingUploadStore {
+
+    private static final String KEY_PREFIX = "documents:pending-upload:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void save(String filename, PendingUpload upload, Duration ttl) {
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + filename, objectMapper.writeValueAsString(upload), ttl);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize pending upload", e);
+        }
+    }
+
+    public Optional<PendingUpload> find(String filename) {
+        String value = redisTemplate.opsForValue().get(KEY_PREFIX + filename);
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(value, PendingUpload.class));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read pending upload", e);
+        }
+    }
+
+    /**
+     * Removes the pending upload, returning false if it was already gone. Only one of
+     * several concurrent confirmations of the same upload sees true.
+     */
+    public boolean remove(String filename) {
+        return Boolean.TRUE.equals(redisTemplate.delete(KEY_PREFIX + filename));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.model.StorageCleanupTask;
+import com.example.documents.repository.StorageCleanupTaskRepository;
+import com.example.documents.repository.StoredFileRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drains the storage_cleanup queue: deletes the queued files from storage in batches and
+ * retries failures with exponential backoff. Each batch is a transaction of its own that
+ * holds the claimed tasks and the files' reference rows until the deletes are recorded.
+ */
+@Component
+@Slf4j
+public class StorageCleanupWorker {
+
+    private final StorageCleanupTaskRepository storageCleanupTaskRepository;
+    private final StoredFileRepository storedFileRepository;
+    private final StorageClient storageClient;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retryDelay;
+    private final Duration maxRetryDelay;
+
+    public StorageCleanupWorker(StorageCleanupTaskRepository storageCleanupTaskRepository,
+                                StoredFileRepository storedFileRepository,
+                                StorageClient storageClient,
+                                TransactionTemplate transactionTemplate,
+                                @Value("${documents.cleanup.batch-size:1000}") int batchSize,
+                                @Value("${documents.cleanup.retry-delay:30s}") Duration retryDelay,
+                                @Value("${documents.cleanup.max-retry-delay:1h}") Duration maxRetryDelay) {
+        this.storageCleanupTaskRepository = storageCleanupTaskRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.storageClient = storageClient;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.retryDelay = retryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+    }
+
+    @Scheduled(fixedDelayString = "${documents.cleanup.interval:5s}")
+    public void drain() {
+        int claimed;
+        do {
+            claimed = transactionTemplate.execute(status -> drainBatch());
+        } while (claimed == batchSize);
+    }
+
+    /**
+     * Processes one batch of due tasks.
+     *
+     * @return The number of tasks claimed, so the caller knows whether more may be waiting
+     */
+    int drainBatch() {
+        List<StorageCleanupTask> tasks = storageCleanupTaskRepository.claimDue(batchSize);
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+
+        // Files referenced again since they were queued are kept; their tasks are simply dropped
+        String[] filenames = tasks.stream().map(StorageCleanupTask::getFilename).distinct().toArray(String[]::new);
+        Set<String> unreferenced = new HashSet<>(storedFileRepository.lockUnreferenced(filenames));
+        Map<String, String> failed = unreferenced.isEmpty() ? Map.of() : storageClient.deleteFiles(unreferenced);
+
+        List<String> deleted = unreferenced.stream().filter(filename -> !failed.containsKey(filename)).toList();
+        if (!deleted.isEmpty()) {
+            storedFileRepository.deleteAllUnreferenced(deleted.toArray(String[]::new));
+        }
+
+        List<StorageCleanupTask> done = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (StorageCleanupTask task : tasks) {
+            String error = failed.get(task.getFilename());
+            if (error == null) {
+                done.add(task);
+                continue;
+            }
+            task.setAttempts(task.getAttempts() + 1);
+            task.setNextAttemptAt(now.plus(backoff(task.getAttempts())));
+            task.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+            log.warn("Could not delete {} from storage (attempt {}): {}", task.getFilename(), task.getAttempts(), error);
+        }
+        storageCleanupTaskRepository.deleteAllInBatch(done);
+
+        log.info("Storage cleanup deleted {} files, {} failed, {} kept as referenced",
+                deleted.size(), failed.size(), filenames.length - unreferenced.size());
+        return tasks.size();
+    }
+
+    // retryDelay doubled per failed attempt, capped at maxRetryDelay
+    Duration backoff(int attempts) {
+        Duration delay = retryDelay.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxRetryDelay) > 0 ? maxRetryDelay : delay;
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.dto.ObjectPageDto;
+import com.example.documents.dto.StoredObjectDto;
+import com.example.documents.repository.DocumentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds stored files that no document references, such as uploads that were never confirmed
+ * or files whose delete failed. Storage files and document files are both read page by page
+ * in byte order and merge-joined, so memory stays bounded by the page size however many files
+ * there are. Orphans older than the grace period are reported, and queued for
+ * StorageCleanupWorker when deleting is enabled. Only one instance runs it at a time.
+ */
+@Component
+@Slf4j
+public class StorageReconciliationJob {
+
+    // Advisory lock key shared by all instances ("docs-gc")
+    static final long LOCK_KEY = 0x646f63732d6763L;
+
+    private final StorageClient storageClient;
+    private final DocumentRepository documentRepository;
+    private final StoredFileReferences storedFileReferences;
+    private final AdvisoryLock advisoryLock;
+    private final int pageSize;
+    private final Duration gracePeriod;
+    private final boolean deleteOrphans;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicLong scannedThisRun = new AtomicLong();
+    private final Counter scanned;
+    private final Counter orphans;
+    private final Counter queued;
+    private final Timer duration;
+
+    public StorageReconciliationJob(StorageClient storageClient,
+                                    DocumentRepository documentRepository,
+                                    StoredFileReferences storedFileReferences,
+                                    AdvisoryLock advisoryLock,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${documents.gc.page-size:1000}") int pageSize,
+                                    @Value("${documents.gc.grace-period:48h}") Duration gracePeriod,
+                                    @Value("${documents.gc.delete-orphans:false}") boolean deleteOrphans) {
+        this.storageClient = storageClient;
+        this.documentRepository = documentRepository;
+        this.storedFileReferences = storedFileReferences;
+        this.advisoryLock = advisoryLock;
+        this.pageSize = pageSize;
+        this.gracePeriod = gracePeriod;
+        this.deleteOrphans = deleteOrphans;
+        this.scanned = meterRegistry.counter("documents.gc.files.scanned");
+        this.orphans = meterRegistry.counter("documents.gc.orphans.found");
+        this.queued = meterRegistry.counter("documents.gc.orphans.queued");
+        this.duration = meterRegistry.timer("documents.gc.duration");
+        meterRegistry.gauge("documents.gc.running", running, flag -> flag.get() ? 1 : 0);
+        meterRegistry.gauge("documents.gc.progress.scanned", scannedThisRun);
+    }
+
+    @Scheduled(cron = "${documents.gc.cron:0 30 3 * * *}")
+    public void reconcile() {
+        // Every instance fires the schedule; the first to take the lock runs, the others skip this run
+        boolean ran = advisoryLock.runExclusively(LOCK_KEY, () -> {
+            running.set(true);
+            try {
+                duration.record(this::run);
+            } finally {
+                running.set(false);
+            }
+        });
+        if (!ran) {
+            log.info("Storage reconciliation is already running on another instance");
+        }
+    }
+
+    /**
+     * Walks all stored files once.
+     *
+     * @return The number of orphans found
+     */
+    long run() {
+        scannedThisRun.set(0);
+        // Anything newer may belong to an upload that is still waiting to be confirmed
+        OffsetDateTime cutoff = OffsetDateTime.now().minus(gracePeriod);
+        DocumentFiles documentFiles = new DocumentFiles();
+        List<String> found = new ArrayList<>();
+        long orphanCount = 0;
+
+        String startAfter = null;
+        do {
+            ObjectPageDto page = storageClient.listFiles(startAfter, pageSize);
+            for (StoredObjectDto object : page.getObjects()) {
+                if (!documentFiles.contains(object.getFilename()) && object.getLastModified().isBefore(cutoff)) {
+                    orphanCount++;
+                    orphans.increment();
+                    found.add(object.getFilename());
+                    log.info("Orphaned file in storage: {} ({} bytes, last modified {})",
+                            object.getFilename(), object.getSize(), object.getLastModified());
+                }
+            }
+            scanned.increment(page.getObjects().size());
+            scannedThisRun.addAndGet(page.getObjects().size());
+            if (found.size() >= pageSize) {
+                handle(found);
+            }
+            startAfter = page.getNextStartAfter();
+        } while (startAfter != null);
+        handle(found);
+
+        log.info("Storage reconciliation scanned {} files and found {} orphans", scannedThisRun.get(), orphanCount);
+        return orphanCount;
+    }
+
+    private void handle(List<String> found) {
+        if (deleteOrphans && !found.isEmpty()) {
+            queued.increment(storedFileReferences.queueOrphans(List.copyOf(found)));
+        }
+        found.clear();
+    }
+
+    /**
+     * Document files in byte order, fetched a page at a time. Lookups must come in ascending
+     * order, which is the order storage lists its files in.
+     */
+    private class DocumentFiles {
+        private List<String> page = List.of();
+        private int index;
+        private String after = "";
+        private boolean exhausted;
+
+        boolean contains(String filename) {
+            while (true) {
+                if (index == page.size()) {
+                    if (exhausted) {
+                        return false;
+                    }
+                    page = documentRepository.findFilenamesAfter(after, pageSize);
+                    index = 0;
+                    exhausted = page.size() < pageSize;
+                    if (page.isEmpty()) {
+                        return false;
+                    }
+                    after = page.get(page.size() - 1);
+                }
+                int comparison = compareBytewise(page.get(index), filename);
+                if (comparison >= 0) {
+                    return comparison == 0;
+                }
+                index++;
+            }
+        }
+    }
+
+    // Code point order is UTF-8 byte order, unlike String.compareTo for characters outside the BMP
+    static int compareBytewise(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i);
+            int y = b.codePointAt(j);
+            if (x != y) {
+                return Integer.compare(x, y);
+            }
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
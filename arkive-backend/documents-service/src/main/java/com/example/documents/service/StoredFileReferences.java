@@ -0,0 +1,157 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.exception.BadRequestException;
+import com.example.documents.repository.StorageCleanupTaskRepository;
+import com.example.documents.repository.StoredFileRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the documents referencing each stored file. Content-addressed uploads of the same
+ * content share one file, so it is only deleted from storage along with its last document.
+ * A file without a count yet, such as one uploaded before counting began, is first given the
+ * number of documents using it, so the counts never depend on a backfill having been run.
+ * Release references before deleting or repointing the documents that held them.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StoredFileReferences {
+
+    // Prefix storage-service gives files named after the SHA-256 of their content
+    static final String CONTENT_ADDRESSED_PREFIX = "sha256-";
+
+    private final StoredFileRepository storedFileRepository;
+    private final StorageClient storageClient;
+    private final StorageCleanupTaskRepository storageCleanupTaskRepository;
+
+    /**
+     * Adds a reference for each occurrence of a filename. Call before saving the documents,
+     * and release the references again if they cannot be saved.
+     */
+    @Transactional
+    public void acquire(Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return;
+        }
+        Map<String, Long> added = filenames.stream()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+
+        String[] names = filenames.toArray(String[]::new);
+        storedFileRepository.track(names);
+        for (Object[] row : storedFileRepository.acquire(names)) {
+            String filename = (String) row[0];
+            long refCount = ((Number) row[1]).longValue();
+            // A shared file that just lost its last reference may have been deleted after the upload
+            // found it; the reference rows lock against that, so checking here settles the race
+            if (refCount == added.get(filename) && filename.startsWith(CONTENT_ADDRESSED_PREFIX)
+                    && storageClient.getFileMetadata(filename) == null) {
+                throw new BadRequestException("File is no longer stored, upload it again: " + filename);
+            }
+        }
+    }
+
+    /**
+     * Drops one reference to a file, deleting it from storage once nothing references it.
+     * A file that cannot be deleted is queued for StorageCleanupWorker, which retries it.
+     */
+    @Transactional
+    public void release(String filename) {
+        storedFileRepository.track(new String[] {filename});
+        Integer remaining = storedFileRepository.release(filename);
+        if (remaining != null && remaining > 0) {
+            log.debug("File {} is still referenced by {} documents", filename, remaining);
+            return;
+        }
+
+        // Deleted while the reference row is still locked, so a concurrent acquire sees the file gone
+        if (storageClient.deleteFile(filename)) {
+            storedFileRepository.deleteUnreferenced(filename);
+            log.info("Successfully deleted file from storage: {}", filename);
+        } else {
+            // The unreferenced row is kept for the worker, the same as for files of deleted folders
+            storageCleanupTaskRepository.enqueueReleased(new String[] {filename});
+            log.warn("Could not delete file from storage, queued for cleanup: {}", filename);
+        }
+    }
+
+    /**
+     * Drops one reference per occurrence of each filename in a single statement, then deletes
+     * the files nothing references anymore in batched storage calls. Files that cannot be
+     * deleted are queued for StorageCleanupWorker, which retries them.
+     *
+     * @return The number of files queued for cleanup
+     */
+    @Transactional
+    public int releaseAll(Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return 0;
+        }
+        Set<String> unreferenced = new LinkedHashSet<>(filenames);
+        String[] names = filenames.toArray(String[]::new);
+        storedFileRepository.track(names);
+        for (Object[] row : storedFileRepository.releaseAll(names)) {
+            if (((Number) row[1]).longValue() > 0) {
+                unreferenced.remove((String) row[0]);
+            }
+        }
+        if (unreferenced.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, String> failed = storageClient.deleteFiles(unreferenced);
+        String[] deleted = unreferenced.stream().filter(filename -> !failed.containsKey(filename)).toArray(String[]::new);
+        if (deleted.length > 0) {
+            storedFileRepository.deleteAllUnreferenced(deleted);
+        }
+        if (!failed.isEmpty()) {
+            failed.forEach((filename, reason) -> log.warn("Could not delete file from storage: {} ({})", filename, reason));
+            storageCleanupTaskRepository.enqueueReleased(failed.keySet().toArray(String[]::new));
+        }
+        log.info("Deleted {} of {} unreferenced files from storage, {} queued for cleanup",
+                deleted.length, unreferenced.size(), failed.size());
+        return failed.size();
+    }
+
+    /**
+     * Drops the references held by all documents of a folder and queues the files nothing
+     * references anymore for StorageCleanupWorker. Only set-based statements are run, so the
+     * cost does not grow with a round trip per document. Call before deleting the documents.
+     *
+     * @return The number of files queued for deletion
+     */
+    @Transactional
+    public int releaseFolder(Long folderId) {
+        storedFileRepository.trackFolderFiles(folderId);
+        storedFileRepository.releaseFolder(folderId);
+        // The unreferenced rows stay until the worker has deleted the file, so an acquire racing the
+        // cleanup locks against the worker the same way it does against release
+        return storageCleanupTaskRepository.enqueueUnreferencedFolderFiles(folderId);
+    }
+
+    /**
+     * Queues stored files that no document references for StorageCleanupWorker. Files that
+     * gained a reference since they were found are left alone.
+     *
+     * @return The number of files queued for deletion
+     */
+    @Transactional
+    public int queueOrphans(Collection<String> filenames) {
+        if (filenames.isEmpty()) {
+            return 0;
+        }
+        String[] names = filenames.toArray(String[]::new);
+        storedFileRepository.track(names);
+        return storageCleanupTaskRepository.enqueueUnreferenced(names);
+    }
+}
@@ -0,0 +1,17 @@
+-- Required before deploying onto an existing database: there is no migration runner, and
+-- documents-service refuses to start while these sequences are behind the tables (see README).
+-- Move ids from IDENTITY columns to pooled sequences so Hibernate can batch inserts.
+-- Sequences advance by 50, matching allocationSize on the entities.
+CREATE SEQUENCE IF NOT EXISTS departments_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS folders_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS documents_seq INCREMENT BY 50;
+
+-- Continue numbering after the highest existing id
+SELECT setval('departments_seq', COALESCE((SELECT MAX(id) FROM departments), 0) + 1, false);
+SELECT setval('folders_seq', COALESCE((SELECT MAX(id) FROM folders), 0) + 1, false);
+SELECT setval('documents_seq', COALESCE((SELECT MAX(id) FROM documents), 0) + 1, false);
+
+-- Ids are now always assigned by the application (or nextval in native inserts)
+ALTER TABLE departments ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE folders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE documents ALTER COLUMN id DROP IDENTITY IF EXISTS;
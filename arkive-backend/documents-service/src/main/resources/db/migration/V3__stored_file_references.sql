@@ -0,0 +1,14 @@
+-- Reference counts for stored files, so a file shared by several documents (content-addressed
+-- uploads of identical content) is only deleted from storage with the last of them.
+CREATE TABLE IF NOT EXISTS stored_files (
+    name VARCHAR(255) PRIMARY KEY,
+    ref_count INTEGER NOT NULL
+);
+
+-- Count the references of files uploaded so far. Files left without a row are counted from their
+-- documents when first acquired or released, so this only saves doing that one file at a time.
+INSERT INTO stored_files (name, ref_count)
+SELECT url, COUNT(*) FROM documents
+WHERE url IS NOT NULL AND url <> 'no-file-attached'
+GROUP BY url
+ON CONFLICT (name) DO NOTHING;
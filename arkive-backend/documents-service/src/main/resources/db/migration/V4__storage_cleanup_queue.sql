@@ -0,0 +1,13 @@
+-- Durable queue of stored files to delete, drained by the cleanup worker with retries.
+CREATE SEQUENCE IF NOT EXISTS storage_cleanup_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS storage_cleanup (
+    id BIGINT PRIMARY KEY,
+    filename VARCHAR(255) NOT NULL,
+    attempts INTEGER NOT NULL,
+    next_attempt_at TIMESTAMP NOT NULL,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_storage_cleanup_next_attempt_at ON storage_cleanup (next_attempt_at);
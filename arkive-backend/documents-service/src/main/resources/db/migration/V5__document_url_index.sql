@@ -0,0 +1,3 @@
+-- Lets storage reconciliation walk document files in byte order, the order storage lists them in,
+-- as an index range scan instead of sorting the whole table per page.
+CREATE INDEX IF NOT EXISTS idx_documents_url_c ON documents ((url COLLATE "C"));
@@ -0,0 +1,208 @@
+package com.example.documents.repository;
+
+import com.example.documents.dto.DocumentSummary;
+import com.example.documents.dto.FolderSummary;
+import com.example.documents.dto.PageCursor;
+import com.example.documents.model.Department;
+import com.example.documents.model.Document;
+import com.example.documents.model.Folder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class DocumentRepositoryTests {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private DocumentRepository documentRepository;
+
+    @Autowired
+    private FolderRepository folderRepository;
+
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    @BeforeEach
+    void setUp() {
+        Department it = departmentRepository.save(new Department(null, "IT"));
+        Department hr = departmentRepository.save(new Department(null, "HR"));
+        Folder folder = new Folder();
+        folder.setTitle("Policies");
+        folder.setDepartment(it);
+        folder = folderRepository.save(folder);
+
+        // Several documents share a timestamp so paging has to fall back to the id tie-breaker
+        for (int i = 0; i < 7; i++) {
+            Document document = new Document();
+            document.setTitle("Document " + i);
+            document.getDepartments().add(i % 2 == 0 ? it : hr);
+            document.setFolder(i < 3 ? folder : null);
+            document = documentRepository.saveAndFlush(document);
+            // created_at is not updatable through the entity, so pin it with a bulk update
+            entityManager.getEntityManager()
+                    .createQuery("UPDATE Document d SET d.createdAt = :createdAt WHERE d.id = :id")
+                    .setParameter("createdAt", CREATED_AT.plusMinutes(i / 3))
+                    .setParameter("id", document.getId())
+                    .executeUpdate();
+        }
+        entityManager.clear();
+    }
+
+    @Test
+    void pagesThroughAllDocumentsNewestFirstWithoutGapsOrDuplicates() {
+        List<DocumentSummary> seen = new ArrayList<>();
+        PageCursor cursor = PageCursor.FIRST_PAGE;
+        Slice<DocumentSummary> page;
+        do {
+            page = documentRepository.findPage(cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, 3));
+            seen.addAll(page.getContent());
+            DocumentSummary last = page.getContent().get(page.getNumberOfElements() - 1);
+            cursor = new PageCursor(last.getCreatedAt(), last.getId());
+        } while (page.hasNext());
+
+        assertEquals(7, seen.size());
+        for (int i = 1; i < seen.size(); i++) {
+            DocumentSummary previous = seen.get(i - 1);
+            DocumentSummary current = seen.get(i);
+            assertTrue(previous.getCreatedAt().isAfter(current.getCreatedAt())
+                    || (previous.getCreatedAt().isEqual(current.getCreatedAt()) && previous.getId() > current.getId()));
+        }
+    }
+
+    @Test
+    void filtersPagesByDepartmentAndFolder() {
+        PageCursor first = PageCursor.FIRST_PAGE;
+
+        Slice<DocumentSummary> byDepartment = documentRepository.findPageByDepartmentNames(
+                List.of("IT"), first.getCreatedAt(), first.getId(), PageRequest.of(0, 10));
+        assertEquals(4, byDepartment.getNumberOfElements());
+        assertFalse(byDepartment.hasNext());
+
+        Slice<DocumentSummary> withoutFolder = documentRepository.findPageByDepartmentNamesAndNoFolder(
+                List.of("IT"), first.getCreatedAt(), first.getId(), PageRequest.of(0, 10));
+        assertEquals(2, withoutFolder.getNumberOfElements());
+
+        Slice<FolderSummary> folders = folderRepository.findPageByDepartmentName(
+                "it", first.getCreatedAt(), first.getId(), PageRequest.of(0, 10));
+        assertEquals(1, folders.getNumberOfElements());
+    }
+
+    @Test
+    void listingsIssueASingleStatementRegardlessOfSize() {
+        for (int i = 0; i < 20; i++) {
+            Department department = departmentRepository.save(new Department(null, "Department " + i));
+            Folder folder = new Folder();
+            folder.setTitle("Folder " + i);
+            folder.setDepartment(department);
+            folder = folderRepository.save(folder);
+
+            Document document = new Document();
+            document.setTitle("Filed document " + i);
+            document.getDepartments().add(department);
+            document.setFolder(folder);
+            documentRepository.save(document);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        PageCursor first = PageCursor.FIRST_PAGE;
+
+        statistics.clear();
+        Slice<DocumentSummary> documents = documentRepository.findPage(first.getCreatedAt(), first.getId(), PageRequest.of(0, 50));
+        documents.forEach(document -> document.getFolderId());
+        assertEquals(27, documents.getNumberOfElements());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        statistics.clear();
+        Slice<FolderSummary> folders = folderRepository.findPage(first.getCreatedAt(), first.getId(), PageRequest.of(0, 50));
+        folders.forEach(folder -> folder.getDepartment());
+        assertEquals(21, folders.getNumberOfElements());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void bulkInsertsAreBatchedWithPooledSequenceIds() {
+        Department department = departmentRepository.save(new Department(null, "Bulk"));
+        entityManager.flush();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<Document> documents = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Document document = new Document();
+            document.setTitle("Imported document " + i);
+            document.getDepartments().add(department);
+            documents.add(document);
+        }
+        documentRepository.saveAll(documents);
+        entityManager.flush();
+
+        // Two sequence calls for 100 ids, one batch for the documents and one for document_departments
+        assertEquals(100, statistics.getEntityInsertCount());
+        assertTrue(statistics.getPrepareStatementCount() <= 5,
+                "expected batched inserts, got " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    void bulkDeleteRemovesDocumentsAndTheirDepartmentLinksWithSetBasedStatements() {
+        List<Long> ids = documentRepository.findAll().stream().map(Document::getId).toList();
+        entityManager.clear();
+
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(7, documentRepository.findFilesByIdIn(ids).size());
+        documentRepository.deleteAllByIdInBatch(ids);
+
+        // One lookup, then one DELETE for the links and one for the documents
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(0L, entityManager.getEntityManager()
+                .createNativeQuery("SELECT COUNT(*) FROM document_departments").getSingleResult());
+        assertEquals(0, documentRepository.count());
+        assertEquals(2, departmentRepository.count());
+    }
+
+    @Test
+    void folderDocumentsAreDeletedWithSetBasedStatements() {
+        Long folderId = folderRepository.findAll().get(0).getId();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        assertEquals(3, documentRepository.deleteByFolderIdInBatch(folderId));
+        folderRepository.deleteAllByIdInBatch(List.of(folderId));
+
+        // No entity is loaded: one DELETE for the links, one for the documents and one for the folder
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(4, documentRepository.count());
+        assertEquals(0, folderRepository.count());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.documents.service;
+
+import com.example.documents.model.Department;
+import com.example.documents.repository.DepartmentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DepartmentServiceImplTests {
+
+    private DepartmentRepository departmentRepository;
+    private StringRedisTemplate redisTemplate;
+    private DepartmentCache departmentCache;
+    private DepartmentServiceImpl departmentService;
+
+    @BeforeEach
+    void setUp() {
+        departmentRepository = mock(DepartmentRepository.class);
+        redisTemplate = mock(StringRedisTemplate.class);
+        departmentCache = new DepartmentCache(redisTemplate, new SimpleMeterRegistry(), 100, Duration.ofMinutes(10));
+        departmentService = new DepartmentServiceImpl(departmentRepository, departmentCache);
+    }
+
+    @Test
+    void resolvesKnownDepartmentsFromTheCacheAfterTheFirstLookup() {
+        when(departmentRepository.findByNameIn(anyCollection()))
+                .thenReturn(List.of(new Department(1L, "IT"), new Department(2L, "HR")));
+
+        List<Department> first = departmentService.findOrCreateDepartments(List.of("IT", "HR", "IT"));
+        List<Department> second = departmentService.findOrCreateDepartments(List.of("HR", "IT"));
+
+        assertEquals(List.of(new Department(1L, "IT"), new Department(2L, "HR")), first);
+        assertEquals(List.of(new Department(2L, "HR"), new Department(1L, "IT")), second);
+        verify(departmentRepository, times(1)).findByNameIn(anyCollection());
+        verify(departmentRepository, never()).insertMissing(any());
+    }
+
+    @Test
+    void createsMissingDepartmentsInOneInsertAndBroadcastsTheirNames() {
+        when(departmentRepository.findByNameIn(anyCollection())).thenReturn(List.of(new Department(1L, "IT")));
+        when(departmentRepository.insertMissing(new String[] {"Legal", "Finance"}))
+                .thenReturn(List.of(new Department(3L, "Legal"), new Department(4L, "Finance")));
+
+        List<Department> departments = departmentService.findOrCreateDepartments(List.of("IT", "Legal", "Finance"));
+
+        assertEquals(List.of(3L, 4L), departments.subList(1, 3).stream().map(Department::getId).toList());
+        verify(departmentRepository, times(1)).insertMissing(any());
+        verify(redisTemplate).convertAndSend(DepartmentCache.INVALIDATION_CHANNEL, "Legal\nFinance");
+    }
+
+    @Test
+    void readsBackDepartmentsCreatedByAConcurrentTransaction() {
+        when(departmentRepository.findByNameIn(anyCollection()))
+                .thenReturn(List.of())
+                .thenReturn(List.of(new Department(5L, "Audit")));
+        when(departmentRepository.insertMissing(any())).thenReturn(List.of());
+
+        Department department = departmentService.findOrCreateDepartment("Audit");
+
+        assertEquals(new Department(5L, "Audit"), department);
+        verify(departmentRepository, times(2)).findByNameIn(anyCollection());
+    }
+
+    @Test
+    void invalidationMessagesEvictCachedNames() {
+        departmentCache.putAll(List.of(new Department(1L, "IT"), new Department(2L, "HR")));
+
+        departmentCache.onMessage(new DefaultMessage(
+                DepartmentCache.INVALIDATION_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "IT".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertEquals(List.of("HR"), List.copyOf(departmentCache.getAll(List.of("IT", "HR")).keySet()));
+    }
+}
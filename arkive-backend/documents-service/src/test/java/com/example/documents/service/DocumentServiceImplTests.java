@@ -0,0 +1,429 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.dto.BulkDeleteResult;
+import com.example.documents.dto.BulkIngestResult;
+import com.example.documents.dto.DocumentDto;
+import com.example.documents.dto.DocumentFile;
+import com.example.documents.dto.FileMetadataDto;
+import com.example.documents.dto.PendingUpload;
+import com.example.documents.exception.BadRequestException;
+import com.example.documents.exception.ResourceNotFoundException;
+import com.example.documents.model.Department;
+import com.example.documents.model.Document;
+import com.example.documents.repository.DocumentRepository;
+import com.example.documents.repository.FolderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DocumentServiceImplTests {
+
+    private static final int UPLOAD_CONCURRENCY = 3;
+
+    private DocumentRepository documentRepository;
+    private StorageClient storageClient;
+    private DepartmentService departmentService;
+    private ThreadPoolTaskExecutor storageUploadExecutor;
+    private PendingUploadStore pendingUploadStore;
+    private StoredFileReferences storedFileReferences;
+    private DocumentServiceImpl documentService;
+
+    @BeforeEach
+    void setUp() {
+        documentRepository = mock(DocumentRepository.class);
+        storageClient = mock(StorageClient.class);
+        departmentService = mock(DepartmentService.class);
+        storageUploadExecutor = new ThreadPoolTaskExecutor();
+        storageUploadExecutor.setCorePoolSize(UPLOAD_CONCURRENCY);
+        storageUploadExecutor.setMaxPoolSize(UPLOAD_CONCURRENCY);
+        storageUploadExecutor.initialize();
+        pendingUploadStore = mock(PendingUploadStore.class);
+        storedFileReferences = mock(StoredFileReferences.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+        documentService = new DocumentServiceImpl(documentRepository, mock(FolderRepository.class),
+                storageClient, departmentService, storageUploadExecutor, pendingUploadStore, storedFileReferences,
+                transactionTemplate);
+        ReflectionTestUtils.setField(documentService, "bulkMaxFiles", 100);
+        ReflectionTestUtils.setField(documentService, "streamMaxFileSize", DataSize.ofMegabytes(1));
+
+        when(departmentService.findOrCreateDepartments(List.of("IT"))).thenReturn(List.of(new Department(1L, "IT")));
+        AtomicLong ids = new AtomicLong();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            documents.forEach(document -> document.setId(ids.incrementAndGet()));
+            return documents;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        storageUploadExecutor.shutdown();
+    }
+
+    @Test
+    void bulkUploadRunsUploadsInParallelWithinTheConfiguredBoundAndSavesOnce() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        when(storageClient.uploadFile(any())).thenAnswer(invocation -> {
+            peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return "stored-" + ((MultipartFile) invocation.getArgument(0)).getOriginalFilename();
+        });
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files(12), template());
+
+        assertEquals(12, result.getSucceeded());
+        assertEquals(0, result.getFailed());
+        assertEquals(UPLOAD_CONCURRENCY, peak.get());
+        assertEquals("stored-file-5.pdf", result.getItems().get(5).getDocument().getUrl());
+        assertEquals("file-5.pdf", result.getItems().get(5).getDocument().getTitle());
+        verify(documentRepository, times(1)).saveAll(anyList());
+        verify(departmentService, times(1)).findOrCreateDepartments(any());
+    }
+
+    @Test
+    void bulkUploadReportsFailedItemsAndStoresTheRest() {
+        when(storageClient.uploadFile(any())).thenAnswer(invocation -> {
+            String name = ((MultipartFile) invocation.getArgument(0)).getOriginalFilename();
+            if (name.equals("file-1.pdf")) {
+                throw new RuntimeException("Error uploading file: storage unavailable");
+            }
+            return "stored-" + name;
+        });
+        List<MultipartFile> files = files(3);
+        files.add(new MockMultipartFile("files", "empty.pdf", "application/pdf", new byte[0]));
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files, template());
+
+        assertEquals(2, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertFalse(result.getItems().get(1).isSuccess());
+        assertNull(result.getItems().get(1).getDocument());
+        assertTrue(result.getItems().get(1).getError().contains("storage unavailable"));
+        assertTrue(result.getItems().get(2).isSuccess());
+        assertEquals("Failed to upload document: File cannot be empty", result.getItems().get(3).getError());
+        verify(storageClient, times(3)).uploadFile(any());
+    }
+
+    @Test
+    void bulkUploadRemovesStoredFilesWhenTheDocumentsCannotBeSaved() {
+        when(storageClient.uploadFile(any())).thenAnswer(invocation ->
+                "stored-" + ((MultipartFile) invocation.getArgument(0)).getOriginalFilename());
+        when(documentRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database unavailable"));
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files(2), template());
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+        verify(storedFileReferences).acquire(List.of("stored-file-0.pdf", "stored-file-1.pdf"));
+        // The references were rolled back with the documents, so there is nothing to release
+        verify(storedFileReferences, never()).release(anyString());
+        verify(storageClient).deleteFiles(List.of("stored-file-0.pdf", "stored-file-1.pdf"));
+    }
+
+    @Test
+    void bulkUploadReportsEveryItemWhenTheFilesCannotBeQueuedForCleanupEither() {
+        when(storageClient.uploadFile(any())).thenAnswer(invocation ->
+                "sha256-shared-" + ((MultipartFile) invocation.getArgument(0)).getOriginalFilename());
+        when(documentRepository.saveAll(anyList())).thenThrow(new IllegalStateException("database unavailable"));
+        when(storedFileReferences.queueOrphans(anyList())).thenThrow(new IllegalStateException("database unavailable"));
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files(2), template());
+
+        assertEquals(2, result.getFailed());
+        result.getItems().forEach(item -> assertEquals("Failed to save document: database unavailable", item.getError()));
+        verify(storedFileReferences).queueOrphans(List.of("sha256-shared-file-0.pdf", "sha256-shared-file-1.pdf"));
+    }
+
+    @Test
+    void bulkUploadRemovesStoredFilesWhenTheirReferencesCannotBeRecorded() {
+        when(storageClient.uploadFile(any())).thenReturn("stored-file.pdf", "sha256-shared.pdf");
+        doThrow(new IllegalStateException("database unavailable")).when(storedFileReferences).acquire(anyList());
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files(2), template());
+
+        assertEquals(2, result.getFailed());
+        // Shared content may still be referenced by other documents
+        verify(storageClient).deleteFiles(List.of("stored-file.pdf"));
+        verify(storedFileReferences).queueOrphans(List.of("sha256-shared.pdf"));
+        verify(storedFileReferences, never()).release(anyString());
+        verify(documentRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void bulkUploadSkipsSavingWhenNothingWasUploaded() {
+        when(storageClient.uploadFile(any())).thenThrow(new RuntimeException("storage unavailable"));
+
+        BulkIngestResult result = documentService.bulkUploadDocuments(files(2), template());
+
+        assertEquals(2, result.getFailed());
+        verify(documentRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void uploadDocumentRecordsTheStoredFile() {
+        when(storageClient.uploadFile(any())).thenReturn("stored-file-0.pdf");
+        when(documentRepository.save(any())).thenAnswer(invocation -> {
+            Document document = invocation.getArgument(0);
+            document.setId(1L);
+            return document;
+        });
+        DocumentDto documentDto = template();
+        documentDto.setTitle("Policy");
+
+        DocumentDto document = documentService.uploadDocument(files(1).get(0), documentDto);
+
+        assertEquals("stored-file-0.pdf", document.getUrl());
+        verify(storedFileReferences).acquire(List.of("stored-file-0.pdf"));
+        verify(storedFileReferences, never()).release(anyString());
+    }
+
+    @Test
+    void uploadDocumentRemovesTheStoredFileWhenTheDocumentCannotBeSaved() {
+        when(storageClient.uploadFile(any())).thenReturn("stored-file-0.pdf");
+        when(documentRepository.save(any())).thenThrow(new IllegalStateException("database unavailable"));
+        DocumentDto documentDto = template();
+        documentDto.setTitle("Policy");
+
+        assertThrows(IllegalStateException.class, () -> documentService.uploadDocument(files(1).get(0), documentDto));
+        verify(storedFileReferences, never()).release(anyString());
+        verify(storageClient).deleteFiles(List.of("stored-file-0.pdf"));
+    }
+
+    @Test
+    void uploadDocumentRemovesTheStoredFileWhenItsReferenceCannotBeRecorded() {
+        when(storageClient.uploadFile(any())).thenReturn("stored-file-0.pdf");
+        doThrow(new IllegalStateException("database unavailable")).when(storedFileReferences).acquire(anyList());
+
+        assertThrows(IllegalStateException.class, () -> documentService.uploadDocument(files(1).get(0), titled("Policy")));
+        verify(storageClient).deleteFiles(List.of("stored-file-0.pdf"));
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void streamUploadDocumentPassesTheBodyStraightToStorage() {
+        InputStream content = new ByteArrayInputStream("streamed".getBytes());
+        when(storageClient.uploadFile(content, "policy.pdf", "application/pdf", 8, null)).thenReturn("stored-policy.pdf");
+        when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        DocumentDto documentDto = template();
+        documentDto.setTitle("Policy");
+
+        DocumentDto document = documentService.streamUploadDocument(content, "policy.pdf", "application/pdf", 8, null, documentDto);
+
+        assertEquals("stored-policy.pdf", document.getUrl());
+    }
+
+    @Test
+    void streamUploadDocumentAlwaysSendsTheBodyEvenWithADeclaredDigest() {
+        String sha256 = "ab".repeat(32);
+        InputStream content = new ByteArrayInputStream("streamed".getBytes());
+        when(storageClient.uploadFile(content, "policy.pdf", "application/pdf", 8, sha256)).thenReturn("sha256-" + sha256 + ".pdf");
+        when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        DocumentDto document = documentService.streamUploadDocument(content, "policy.pdf", "application/pdf", 8, sha256, titled("Policy"));
+
+        assertEquals("sha256-" + sha256 + ".pdf", document.getUrl());
+        verify(storedFileReferences).acquire(List.of("sha256-" + sha256 + ".pdf"));
+    }
+
+    @Test
+    void streamUploadDocumentRejectsBodiesOverTheSizeLimitBeforeUploading() {
+        DocumentDto documentDto = template();
+        documentDto.setTitle("Policy");
+
+        assertThrows(BadRequestException.class, () -> documentService.streamUploadDocument(
+                new ByteArrayInputStream(new byte[0]), "policy.pdf", "application/pdf", DataSize.ofMegabytes(2).toBytes(), null, documentDto));
+        verify(storageClient, never()).uploadFile(any(InputStream.class), anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    void confirmUploadCreatesTheDocumentOnceTheDeclaredFileIsStored() {
+        when(pendingUploadStore.find("stored-policy.pdf"))
+                .thenReturn(Optional.of(new PendingUpload("application/pdf", 2048, titled("Policy"))));
+        when(pendingUploadStore.remove("stored-policy.pdf")).thenReturn(true);
+        when(storageClient.getFileMetadata("stored-policy.pdf"))
+                .thenReturn(new FileMetadataDto("stored-policy.pdf", "application/pdf", 2048, "etag"));
+        when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        DocumentDto document = documentService.confirmUpload("stored-policy.pdf");
+
+        assertEquals("stored-policy.pdf", document.getUrl());
+        assertEquals("Policy", document.getTitle());
+        verify(storageClient, never()).deleteFile(anyString());
+    }
+
+    @Test
+    void confirmUploadDiscardsFilesThatDoNotMatchTheDeclaration() {
+        when(pendingUploadStore.find("stored-policy.pdf"))
+                .thenReturn(Optional.of(new PendingUpload("application/pdf", 2048, titled("Policy"))));
+        when(pendingUploadStore.remove("stored-policy.pdf")).thenReturn(true);
+        when(storageClient.getFileMetadata("stored-policy.pdf"))
+                .thenReturn(new FileMetadataDto("stored-policy.pdf", "application/pdf", 900_000_000, "etag"));
+
+        assertThrows(BadRequestException.class, () -> documentService.confirmUpload("stored-policy.pdf"));
+        verify(storageClient).deleteFile("stored-policy.pdf");
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void confirmUploadKeepsThePendingUploadUntilTheFileArrives() {
+        when(pendingUploadStore.find("stored-policy.pdf"))
+                .thenReturn(Optional.of(new PendingUpload("application/pdf", 2048, titled("Policy"))));
+
+        assertThrows(BadRequestException.class, () -> documentService.confirmUpload("stored-policy.pdf"));
+        verify(pendingUploadStore, never()).remove(anyString());
+    }
+
+    @Test
+    void confirmUploadCreatesOneDocumentWhenConfirmedTwice() {
+        when(pendingUploadStore.find("stored-policy.pdf"))
+                .thenReturn(Optional.of(new PendingUpload("application/pdf", 2048, titled("Policy"))));
+        when(pendingUploadStore.remove("stored-policy.pdf")).thenReturn(false);
+        when(storageClient.getFileMetadata("stored-policy.pdf"))
+                .thenReturn(new FileMetadataDto("stored-policy.pdf", "application/pdf", 2048, "etag"));
+
+        assertThrows(ResourceNotFoundException.class, () -> documentService.confirmUpload("stored-policy.pdf"));
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void deleteDocumentReleasesItsFileInsteadOfDeletingItOutright() {
+        Document document = new Document();
+        document.setId(1L);
+        document.setUrl("sha256-shared.pdf");
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(document));
+
+        documentService.deleteDocument(1L);
+
+        verify(storedFileReferences).release("sha256-shared.pdf");
+        verify(storageClient, never()).deleteFile(anyString());
+        verify(documentRepository).deleteById(1L);
+    }
+
+    @Test
+    void createDocumentReferencesAnExistingFileNamedByTheClient() {
+        when(documentRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        DocumentDto documentDto = titled("Policy");
+        documentDto.setUrl("stored-file-1.pdf");
+
+        documentService.createDocument(documentDto);
+
+        verify(storedFileReferences).acquire(List.of("stored-file-1.pdf"));
+    }
+
+    @Test
+    void createAndUpdateRejectContentAddressedFilesNamedByTheClient() {
+        String shared = "sha256-" + "ab".repeat(32) + ".pdf";
+        DocumentDto documentDto = titled("Policy");
+        documentDto.setUrl(shared);
+        assertThrows(BadRequestException.class, () -> documentService.createDocument(documentDto));
+
+        Document document = new Document();
+        document.setId(1L);
+        document.setUrl("stored-file-1.pdf");
+        when(documentRepository.findById(1L)).thenReturn(Optional.of(document));
+        assertThrows(BadRequestException.class, () -> documentService.updateDocument(1L, documentDto));
+
+        verify(storedFileReferences, never()).acquire(anyList());
+        verify(storedFileReferences, never()).release(anyString());
+        verify(documentRepository, never()).save(any());
+    }
+
+    @Test
+    void bulkDeleteReportsMissingDocumentsAndReleasesTheFilesBeforeDeletingTheRows() {
+        when(documentRepository.findFilesByIdIn(List.of(1L, 2L, 3L, 4L))).thenReturn(List.of(
+                documentFile(1L, "stored-file-1.pdf"), documentFile(2L, "stored-file-2.pdf"), documentFile(4L, "no-file-attached")));
+        // One file could not be deleted and was queued for cleanup, which retries it
+        when(storedFileReferences.releaseAll(List.of("stored-file-1.pdf", "stored-file-2.pdf"))).thenReturn(1);
+
+        BulkDeleteResult result = documentService.bulkDeleteDocuments(List.of(1L, 2L, 3L, 4L, 1L));
+
+        assertEquals(4, result.getTotal());
+        assertEquals(3, result.getSucceeded());
+        assertTrue(result.getItems().get(0).isSuccess());
+        assertTrue(result.getItems().get(1).isSuccess());
+        assertEquals("Document not found with id: 3", result.getItems().get(2).getError());
+        assertTrue(result.getItems().get(3).isSuccess());
+        InOrder inOrder = inOrder(storedFileReferences, documentRepository);
+        inOrder.verify(storedFileReferences).releaseAll(List.of("stored-file-1.pdf", "stored-file-2.pdf"));
+        inOrder.verify(documentRepository).deleteAllByIdInBatch(Set.of(1L, 2L, 4L));
+        verify(storageClient, never()).deleteFile(anyString());
+    }
+
+    private static DocumentFile documentFile(Long id, String url) {
+        return new DocumentFile() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public String getUrl() {
+                return url;
+            }
+        };
+    }
+
+    private DocumentDto titled(String title) {
+        DocumentDto documentDto = template();
+        documentDto.setTitle(title);
+        return documentDto;
+    }
+
+    private List<MultipartFile> files(int count) {
+        List<MultipartFile> files = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            files.add(new MockMultipartFile("files", "file-" + i + ".pdf", "application/pdf", ("content " + i).getBytes()));
+        }
+        return files;
+    }
+
+    private DocumentDto template() {
+        DocumentDto template = new DocumentDto();
+        template.setDepartment("IT");
+        template.setDepartments(List.of("IT"));
+        template.setOwnerId(1L);
+        template.setOwnerName("Owner");
+        return template;
+    }
+}
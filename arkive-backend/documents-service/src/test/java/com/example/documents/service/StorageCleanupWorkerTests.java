@@ -0,0 +1,81 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.model.StorageCleanupTask;
+import com.example.documents.repository.StorageCleanupTaskRepository;
+import com.example.documents.repository.StoredFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageCleanupWorkerTests {
+
+    private StorageCleanupTaskRepository storageCleanupTaskRepository;
+    private StoredFileRepository storedFileRepository;
+    private StorageClient storageClient;
+    private StorageCleanupWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        storageCleanupTaskRepository = mock(StorageCleanupTaskRepository.class);
+        storedFileRepository = mock(StoredFileRepository.class);
+        storageClient = mock(StorageClient.class);
+        worker = new StorageCleanupWorker(storageCleanupTaskRepository, storedFileRepository, storageClient,
+                mock(TransactionTemplate.class), 100, Duration.ofSeconds(30), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void deletesUnreferencedFilesInOneBatchAndRetriesFailures() {
+        StorageCleanupTask deleted = task(1L, "a.pdf");
+        StorageCleanupTask failing = task(2L, "b.pdf");
+        StorageCleanupTask referencedAgain = task(3L, "sha256-shared.pdf");
+        when(storageCleanupTaskRepository.claimDue(100)).thenReturn(List.of(deleted, failing, referencedAgain));
+        when(storedFileRepository.lockUnreferenced(any())).thenReturn(List.of("a.pdf", "b.pdf"));
+        when(storageClient.deleteFiles(Set.of("a.pdf", "b.pdf"))).thenReturn(Map.of("b.pdf", "Access Denied."));
+
+        assertEquals(3, worker.drainBatch());
+
+        verify(storedFileRepository).deleteAllUnreferenced(new String[] {"a.pdf"});
+        verify(storageCleanupTaskRepository).deleteAllInBatch(List.of(deleted, referencedAgain));
+        assertEquals(1, failing.getAttempts());
+        assertEquals("Access Denied.", failing.getLastError());
+        assertTrue(failing.getNextAttemptAt().isAfter(LocalDateTime.now().plusSeconds(20)));
+    }
+
+    @Test
+    void skipsStorageWhenEveryQueuedFileIsReferencedAgain() {
+        when(storageCleanupTaskRepository.claimDue(100)).thenReturn(List.of(task(1L, "sha256-shared.pdf")));
+        when(storedFileRepository.lockUnreferenced(any())).thenReturn(List.of());
+
+        worker.drainBatch();
+
+        verify(storageClient, never()).deleteFiles(any());
+        verify(storedFileRepository, never()).deleteAllUnreferenced(any());
+    }
+
+    @Test
+    void backoffDoublesUpToTheLimit() {
+        assertEquals(Duration.ofSeconds(30), worker.backoff(1));
+        assertEquals(Duration.ofSeconds(120), worker.backoff(3));
+        assertEquals(Duration.ofMinutes(5), worker.backoff(10));
+        assertEquals(Duration.ofMinutes(5), worker.backoff(1000));
+    }
+
+    private static StorageCleanupTask task(Long id, String filename) {
+        return new StorageCleanupTask(id, filename, 0, LocalDateTime.now(), null, LocalDateTime.now());
+    }
+}
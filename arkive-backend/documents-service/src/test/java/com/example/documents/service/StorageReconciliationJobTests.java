@@ -0,0 +1,117 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.dto.ObjectPageDto;
+import com.example.documents.dto.StoredObjectDto;
+import com.example.documents.repository.DocumentRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageReconciliationJobTests {
+
+    private static final OffsetDateTime OLD = OffsetDateTime.now().minusDays(7);
+
+    private StorageClient storageClient;
+    private DocumentRepository documentRepository;
+    private StoredFileReferences storedFileReferences;
+    private AdvisoryLock advisoryLock;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        storageClient = mock(StorageClient.class);
+        documentRepository = mock(DocumentRepository.class);
+        storedFileReferences = mock(StoredFileReferences.class);
+        advisoryLock = mock(AdvisoryLock.class);
+        when(advisoryLock.runExclusively(eq(StorageReconciliationJob.LOCK_KEY), any())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return true;
+        });
+        meterRegistry = new SimpleMeterRegistry();
+
+        // Storage holds a.pdf to f.pdf; documents reference b, d and e plus a file missing from storage
+        when(storageClient.listFiles(null, 2)).thenReturn(page("b.pdf", object("a.pdf", OLD), object("b.pdf", OLD)));
+        when(storageClient.listFiles("b.pdf", 2)).thenReturn(page("d.pdf", object("c.pdf", OLD), object("d.pdf", OLD)));
+        when(storageClient.listFiles("d.pdf", 2)).thenReturn(page("f.pdf", object("e.pdf", OLD), object("f.pdf", OffsetDateTime.now())));
+        when(storageClient.listFiles("f.pdf", 2)).thenReturn(page(null));
+        when(documentRepository.findFilenamesAfter("", 2)).thenReturn(List.of("b.pdf", "bb.pdf"));
+        when(documentRepository.findFilenamesAfter("bb.pdf", 2)).thenReturn(List.of("d.pdf", "e.pdf"));
+        when(documentRepository.findFilenamesAfter("e.pdf", 2)).thenReturn(List.of());
+    }
+
+    @Test
+    void reportsUnreferencedFilesOlderThanTheGracePeriodWithoutQueueingThem() {
+        StorageReconciliationJob job = job(false);
+
+        // a.pdf and c.pdf are orphans; f.pdf is unreferenced but may still be confirmed
+        assertEquals(2, job.run());
+
+        verify(storedFileReferences, never()).queueOrphans(any());
+        assertEquals(6, meterRegistry.counter("documents.gc.files.scanned").count());
+        assertEquals(2, meterRegistry.counter("documents.gc.orphans.found").count());
+        // Each side is read a page at a time, never twice
+        verify(storageClient, times(4)).listFiles(any(), anyInt());
+        verify(documentRepository, times(3)).findFilenamesAfter(anyString(), anyInt());
+    }
+
+    @Test
+    void queuesOrphansInPagedBatchesWhenDeletingIsEnabled() {
+        when(storedFileReferences.queueOrphans(any())).thenAnswer(invocation -> invocation.<List<?>>getArgument(0).size());
+        StorageReconciliationJob job = job(true);
+
+        job.reconcile();
+
+        verify(storedFileReferences).queueOrphans(List.of("a.pdf", "c.pdf"));
+        assertEquals(2, meterRegistry.counter("documents.gc.orphans.queued").count());
+        assertEquals(1, meterRegistry.timer("documents.gc.duration").count());
+        assertEquals(0, meterRegistry.get("documents.gc.running").gauge().value());
+    }
+
+    @Test
+    void skipsTheRunWhileAnotherInstanceHoldsTheLock() {
+        when(advisoryLock.runExclusively(eq(StorageReconciliationJob.LOCK_KEY), any())).thenReturn(false);
+
+        job(true).reconcile();
+
+        verify(storageClient, never()).listFiles(any(), anyInt());
+        assertEquals(0, meterRegistry.timer("documents.gc.duration").count());
+    }
+
+    @Test
+    void comparesNamesInStorageByteOrder() {
+        assertTrue(StorageReconciliationJob.compareBytewise("a.pdf", "b.pdf") < 0);
+        assertTrue(StorageReconciliationJob.compareBytewise("a", "a.pdf") < 0);
+        // U+1F4C4 sorts after U+FFFD in UTF-8, although its UTF-16 surrogates sort before it
+        assertTrue(StorageReconciliationJob.compareBytewise("\uD83D\uDCC4.pdf", "\uFFFD.pdf") > 0);
+    }
+
+    private StorageReconciliationJob job(boolean deleteOrphans) {
+        return new StorageReconciliationJob(storageClient, documentRepository, storedFileReferences, advisoryLock, meterRegistry,
+                2, Duration.ofHours(48), deleteOrphans);
+    }
+
+    private static ObjectPageDto page(String nextStartAfter, StoredObjectDto... objects) {
+        return new ObjectPageDto(List.of(objects), nextStartAfter);
+    }
+
+    private static StoredObjectDto object(String filename, OffsetDateTime lastModified) {
+        return new StoredObjectDto(filename, 1024, lastModified);
+    }
+}
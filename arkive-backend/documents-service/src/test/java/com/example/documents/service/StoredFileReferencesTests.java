@@ -0,0 +1,117 @@
+package com.example.documents.service;
+
+import com.example.documents.client.StorageClient;
+import com.example.documents.dto.FileMetadataDto;
+import com.example.documents.exception.BadRequestException;
+import com.example.documents.repository.StorageCleanupTaskRepository;
+import com.example.documents.repository.StoredFileRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StoredFileReferencesTests {
+
+    private static final String SHARED = "sha256-" + "ab".repeat(32) + ".pdf";
+
+    private StoredFileRepository storedFileRepository;
+    private StorageClient storageClient;
+    private StorageCleanupTaskRepository storageCleanupTaskRepository;
+    private StoredFileReferences storedFileReferences;
+
+    @BeforeEach
+    void setUp() {
+        storedFileRepository = mock(StoredFileRepository.class);
+        storageClient = mock(StorageClient.class);
+        storageCleanupTaskRepository = mock(StorageCleanupTaskRepository.class);
+        storedFileReferences = new StoredFileReferences(storedFileRepository, storageClient, storageCleanupTaskRepository);
+    }
+
+    @Test
+    void keepsTheFileWhileOtherDocumentsReferenceIt() {
+        when(storedFileRepository.release(SHARED)).thenReturn(2, 1, 0);
+        when(storageClient.deleteFile(SHARED)).thenReturn(true);
+
+        storedFileReferences.release(SHARED);
+        storedFileReferences.release(SHARED);
+        verify(storageClient, never()).deleteFile(anyString());
+
+        storedFileReferences.release(SHARED);
+        verify(storageClient).deleteFile(SHARED);
+        verify(storedFileRepository).deleteUnreferenced(SHARED);
+        verify(storageCleanupTaskRepository, never()).enqueueReleased(any());
+    }
+
+    @Test
+    void queuesAFileThatCannotBeDeletedForTheCleanupWorker() {
+        when(storedFileRepository.release("stored-file-1.pdf")).thenReturn(0);
+        when(storageClient.deleteFile("stored-file-1.pdf")).thenReturn(false);
+
+        storedFileReferences.release("stored-file-1.pdf");
+
+        // The unreferenced row stays, so the worker can lock and delete it later
+        verify(storedFileRepository, never()).deleteUnreferenced(anyString());
+        verify(storageCleanupTaskRepository).enqueueReleased(new String[] {"stored-file-1.pdf"});
+    }
+
+    @Test
+    void countsUntrackedFilesFromTheirDocumentsBeforeReleasing() {
+        when(storedFileRepository.release("legacy.pdf")).thenReturn(1);
+
+        storedFileReferences.release("legacy.pdf");
+
+        InOrder inOrder = inOrder(storedFileRepository);
+        inOrder.verify(storedFileRepository).track(new String[] {"legacy.pdf"});
+        inOrder.verify(storedFileRepository).release("legacy.pdf");
+        verify(storageClient, never()).deleteFile(anyString());
+    }
+
+    @Test
+    void acquiresAllReferencesInOneStatement() {
+        when(storedFileRepository.acquire(any())).thenReturn(List.of(
+                new Object[] {SHARED, 5}, new Object[] {"stored-file-1.pdf", 1}));
+
+        storedFileReferences.acquire(List.of(SHARED, SHARED, "stored-file-1.pdf"));
+
+        verify(storedFileRepository).acquire(new String[] {SHARED, SHARED, "stored-file-1.pdf"});
+        // Only first references to shared files are checked against storage
+        verify(storageClient, never()).getFileMetadata(anyString());
+    }
+
+    @Test
+    void rejectsAFirstReferenceToASharedFileThatWasDeletedMeanwhile() {
+        when(storedFileRepository.acquire(any())).thenReturn(List.<Object[]>of(new Object[] {SHARED, 1}));
+
+        assertThrows(BadRequestException.class, () -> storedFileReferences.acquire(List.of(SHARED)));
+
+        when(storageClient.getFileMetadata(SHARED)).thenReturn(new FileMetadataDto(SHARED, "application/pdf", 10, "etag"));
+        storedFileReferences.acquire(List.of(SHARED));
+    }
+
+    @Test
+    void releaseAllDeletesOnlyTheFilesNothingReferencesAnymore() {
+        when(storedFileRepository.releaseAll(any())).thenReturn(List.of(
+                new Object[] {SHARED, 1}, new Object[] {"stored-file-1.pdf", 0}));
+        when(storageClient.deleteFiles(any())).thenReturn(Map.of("legacy.pdf", "Access Denied."));
+
+        int queued = storedFileReferences.releaseAll(List.of(SHARED, "stored-file-1.pdf", "legacy.pdf"));
+
+        verify(storageClient).deleteFiles(Set.of("stored-file-1.pdf", "legacy.pdf"));
+        verify(storedFileRepository).deleteAllUnreferenced(new String[] {"stored-file-1.pdf"});
+        verify(storageCleanupTaskRepository).enqueueReleased(new String[] {"legacy.pdf"});
+        assertEquals(1, queued);
+    }
+}
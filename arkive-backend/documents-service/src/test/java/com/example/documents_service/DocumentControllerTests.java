@@ -1,6 +1,7 @@
 package com.example.documents_service;
 
 import com.example.documents.controller.DocumentController;
+import com.example.documents.dto.CursorPage;
 import com.example.documents.dto.DocumentDto;
 import com.example.documents.dto.response.ApiResponse;
 import com.example.documents.service.DocumentService;
@@ -55,7 +56,7 @@ public class DocumentControllerTests {
         List<DocumentDto> documents = Arrays.asList(doc1, doc2);
         
         // Mock the service response
-        when(documentService.getAllDocuments()).thenReturn(documents);
+        when(documentService.getAllDocuments(any())).thenReturn(new CursorPage<>(documents, null));
         
         // Perform GET request and validate response
         mockMvc.perform(MockMvcRequestBuilders.get("/api/documents")
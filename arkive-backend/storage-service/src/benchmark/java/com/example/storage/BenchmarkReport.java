@@ -0,0 +1,44 @@
+package com.example.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A plain-text table of benchmark results, written to the directory the benchmark task passes
+ * in benchmark.reports (build/reports/benchmarks) rather than to the test output.
+ */
+class BenchmarkReport {
+
+    private final String name;
+    private final List<String> lines = new ArrayList<>();
+
+    BenchmarkReport(String name, String description) {
+        this.name = name;
+        lines.add(description);
+        lines.add("");
+    }
+
+    BenchmarkReport row(String format, Object... args) {
+        lines.add(String.format(format, args));
+        return this;
+    }
+
+    /**
+     * @return The file the report was written to
+     */
+    Path write() {
+        Path directory = Path.of(System.getProperty("benchmark.reports", "build/reports/benchmarks"));
+        Path report = directory.resolve(name + ".txt");
+        try {
+            Files.createDirectories(directory);
+            Files.write(report, lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return report;
+    }
+}
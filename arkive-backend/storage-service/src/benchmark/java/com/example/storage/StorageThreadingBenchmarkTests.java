@@ -0,0 +1,125 @@
+package com.example.storage;
+
+import com.example.storage.config.TestMinioConfig;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs 2000 concurrent downloads against a MinIO that takes a while to send each file, once
+ * with Tomcat's platform thread pool and once with virtual threads, and reports the throughput
+ * of each side by side. Platform threads serve at most server.tomcat.threads.max downloads at a
+ * time; virtual threads are only bounded by connections. Virtual threads need Java 21, so run
+ * with ./gradlew benchmark -PjavaVersion=21.
+ */
+class StorageThreadingBenchmarkTests {
+
+    private static final int CONCURRENT_DOWNLOADS = 2000;
+    private static final long MINIO_LATENCY_MILLIS = 500;
+    private static final byte[] CONTENT = new byte[16 * 1024];
+
+    @Test
+    void virtualThreadsServeSlowDownloadsFasterThanThePlatformPool() throws Exception {
+        assertTrue(Runtime.version().feature() >= 21,
+                "Virtual threads need Java 21; run with ./gradlew benchmark -PjavaVersion=21");
+
+        long platformMillis = run(false);
+        long virtualMillis = run(true);
+
+        BenchmarkReport report = new BenchmarkReport("threading",
+                CONCURRENT_DOWNLOADS + " concurrent downloads, " + MINIO_LATENCY_MILLIS + " ms MinIO latency each")
+                .row("%-16s %10s %14s", "mode", "elapsed ms", "downloads/s")
+                .row("%-16s %10d %14.1f", "platform threads", platformMillis, CONCURRENT_DOWNLOADS * 1000.0 / platformMillis)
+                .row("%-16s %10d %14.1f", "virtual threads", virtualMillis, CONCURRENT_DOWNLOADS * 1000.0 / virtualMillis);
+        report.write();
+
+        assertTrue(virtualMillis < platformMillis,
+                "virtual threads took " + virtualMillis + " ms, platform threads " + platformMillis + " ms");
+    }
+
+    // Starts the service with the given threading, runs the downloads and returns how long they took
+    private static long run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(StorageServiceApplication.class, TestMinioConfig.class)
+                .profiles("test")
+                .properties("server.port=0", "spring.threads.virtual.enabled=" + virtualThreads)
+                .run()) {
+            stubSlowMinio(context.getBean(MinioClient.class));
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+
+            HttpClient client = HttpClient.newHttpClient();
+            long started = System.nanoTime();
+            List<CompletableFuture<HttpResponse<byte[]>>> downloads = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_DOWNLOADS; i++) {
+                URI uri = URI.create("http://localhost:" + port + "/api/storage/download/file-" + i + ".pdf");
+                downloads.add(client.sendAsync(HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofByteArray()));
+            }
+            for (CompletableFuture<HttpResponse<byte[]>> download : downloads) {
+                HttpResponse<byte[]> response = download.get(5, TimeUnit.MINUTES);
+                assertEquals(200, response.statusCode());
+                assertEquals(CONTENT.length, response.body().length);
+            }
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        }
+    }
+
+    private static void stubSlowMinio(MinioClient minioClient) throws Exception {
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn((long) CONTENT.length);
+        when(stat.etag()).thenReturn("d41d8cd98f00b204e9800998ecf8427e");
+        when(stat.lastModified()).thenReturn(ZonedDateTime.now());
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(stat);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(invocation -> {
+            GetObjectArgs args = invocation.getArgument(0);
+            return new GetObjectResponse(Headers.of(), args.bucket(), null, args.object(), slowContent());
+        });
+    }
+
+    // Holds the first read for the MinIO latency, during which the request thread is blocked
+    private static InputStream slowContent() {
+        return new FilterInputStream(new ByteArrayInputStream(CONTENT)) {
+            private boolean waited;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (!waited) {
+                    waited = true;
+                    try {
+                        Thread.sleep(MINIO_LATENCY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException();
+                    }
+                }
+                return super.read(b, off, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.storage;
+
+import com.example.storage.config.TestMinioConfig;
+import io.minio.MinioClient;
+import io.minio.PutObjectArgs;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Uploads 10 MB to 500 MB files through the multipart and the streaming endpoints and
+ * reports the latency of each, along with how many bytes were spooled to disk on the way.
+ * Needs about 600 MB of free disk for the multipart spool; run with ./gradlew benchmark.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestMinioConfig.class)
+@ActiveProfiles("test")
+class StorageUploadBenchmarkTests {
+
+    private static final long[] FILE_SIZES = {10L << 20, 100L << 20, 500L << 20};
+    private static final String BOUNDARY = "benchmark-boundary";
+
+    private static Path multipartLocation;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @DynamicPropertySource
+    static void multipartProperties(DynamicPropertyRegistry registry) throws IOException {
+        multipartLocation = Files.createTempDirectory("multipart-benchmark");
+        registry.add("spring.servlet.multipart.location", multipartLocation::toString);
+        registry.add("spring.servlet.multipart.max-file-size", () -> "600MB");
+        registry.add("spring.servlet.multipart.max-request-size", () -> "600MB");
+    }
+
+    @Test
+    void streamingUploadsSkipTheTempFileThatMultipartUploadsSpoolTo() throws Exception {
+        // MinIO drains the stream as putObject would; the spooled bytes are measured while the request is in flight
+        AtomicLong stored = new AtomicLong();
+        AtomicLong spooled = new AtomicLong();
+        when(minioClient.putObject(any(PutObjectArgs.class))).thenAnswer(invocation -> {
+            PutObjectArgs args = invocation.getArgument(0);
+            spooled.set(spooledBytes());
+            stored.set(args.stream().transferTo(OutputStream.nullOutputStream()));
+            return null;
+        });
+
+        BenchmarkReport report = new BenchmarkReport("upload", "Multipart vs streaming uploads")
+                .row("%10s %16s %16s %16s %16s", "size", "multipart ms", "multipart disk", "streaming ms", "streaming disk");
+        for (long size : FILE_SIZES) {
+            long multipartMillis = time(() -> send(multipartUpload(size)));
+            assertEquals(size, stored.get());
+            long multipartSpooled = spooled.get();
+
+            long streamingMillis = time(() -> send(streamingUpload(size)));
+            assertEquals(size, stored.get());
+            long streamingSpooled = spooled.get();
+
+            report.row("%8d MB %16d %13d MB %16d %13d MB",
+                    size >> 20, multipartMillis, multipartSpooled >> 20, streamingMillis, streamingSpooled >> 20);
+            assertTrue(multipartSpooled >= size, "multipart upload should have spooled the file to disk");
+            assertEquals(0, streamingSpooled);
+        }
+        report.write();
+    }
+
+    private HttpRequest multipartUpload(long size) {
+        String head = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"benchmark.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+        String tail = "\r\n--" + BOUNDARY + "--\r\n";
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/storage/upload"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.concat(
+                        HttpRequest.BodyPublishers.ofString(head, StandardCharsets.UTF_8),
+                        HttpRequest.BodyPublishers.fromPublisher(
+                                HttpRequest.BodyPublishers.ofInputStream(() -> syntheticContent(size)), size),
+                        HttpRequest.BodyPublishers.ofString(tail, StandardCharsets.UTF_8)))
+                .build();
+    }
+
+    private HttpRequest streamingUpload(long size) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/storage/upload/stream?filename=benchmark.bin"))
+                .header("Content-Type", "application/octet-stream")
+                .PUT(HttpRequest.BodyPublishers.fromPublisher(
+                        HttpRequest.BodyPublishers.ofInputStream(() -> syntheticContent(size)), size))
+                .build();
+    }
+
+    private void send(HttpRequest request) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, response.statusCode(), response.body());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long time(Runnable upload) {
+        long started = System.nanoTime();
+        upload.run();
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+
+    private static long spooledBytes() throws IOException {
+        try (Stream<Path> files = Files.list(multipartLocation)) {
+            return files.mapToLong(file -> file.toFile().length()).sum();
+        }
+    }
+
+    private static InputStream syntheticContent(long size) {
+        return new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                remaining--;
+                return 'a';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, remaining);
+                Arrays.fill(b, off, off + n, (byte) 'a');
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+}
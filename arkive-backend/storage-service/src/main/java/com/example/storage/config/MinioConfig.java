@@ -1,6 +1,8 @@
 package com.example.storage.config;
 
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -20,15 +22,51 @@ public class MinioConfig {
     @Value("${minio.bucketName}")
     private String bucketName;
 
+    @Value("${minio.publicEndpoint:${minio.endpoint}}")
+    private String publicEndpoint;
+
+    @Value("${minio.region:us-east-1}")
+    private String region;
+
+    private MinioClient presignClient;
+
     @Bean
     public MinioClient minioClient() {
+        // A fixed region saves the bucket location lookup MinIO would otherwise make before signing
         return MinioClient.builder()
                 .endpoint(endpoint)
+                .region(region)
                 .credentials(accessKey, secretKey)
                 .build();
     }
 
+    @Bean
+    public MultipartMinioClient multipartMinioClient() {
+        return new MultipartMinioClient(MinioAsyncClient.builder()
+                .endpoint(endpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build());
+    }
+
     public String getBucketName() {
         return bucketName;
     }
+
+    /**
+     * Client used only to sign URLs that are handed out to browsers. It signs for the endpoint
+     * clients can reach, and with a fixed region signing never has to contact the server.
+     */
+    public MinioClient getPresignClient() {
+        return presignClient;
+    }
+
+    @PostConstruct
+    void initPresignClient() {
+        presignClient = MinioClient.builder()
+                .endpoint(publicEndpoint)
+                .region(region)
+                .credentials(accessKey, secretKey)
+                .build();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package com.example.storage.config;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.Multimap;
+import io.minio.ListPartsResponse;
+import io.minio.MinioAsyncClient;
+import io.minio.messages.Part;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Exposes the S3 multipart upload calls, which MinioClient only uses internally, so uploads can
+ * be assembled from parts sent in separate requests. Each call waits for its async request, and
+ * a failed request throws its original exception.
+ */
+public class MultipartMinioClient extends MinioAsyncClient {
+
+    public MultipartMinioClient(MinioAsyncClient client) {
+        super(client);
+    }
+
+    public String initiate(String bucketName, String objectName, String contentType) throws Exception {
+        Multimap<String, String> headers = HashMultimap.create();
+        headers.put("Content-Type", contentType);
+        return join(createMultipartUploadAsync(bucketName, null, objectName, headers, null)).result().uploadId();
+    }
+
+    /**
+     * Uploads one part and returns its ETag. The part content has to be in memory, as the request is signed over it.
+     */
+    public String uploadPart(String bucketName, String objectName, String uploadId, int partNumber,
+                             byte[] content) throws Exception {
+        return join(uploadPartAsync(bucketName, null, objectName, content, content.length, uploadId, partNumber, null, null)).etag();
+    }
+
+    // All parts uploaded so far, in part number order
+    public List<Part> listParts(String bucketName, String objectName, String uploadId) throws Exception {
+        List<Part> parts = new ArrayList<>();
+        Integer marker = null;
+        ListPartsResponse response;
+        do {
+            response = join(listPartsAsync(bucketName, null, objectName, 1000, marker, uploadId, null, null));
+            parts.addAll(response.result().partList());
+            marker = response.result().nextPartNumberMarker();
+        } while (response.result().isTruncated());
+        return parts;
+    }
+
+    public void complete(String bucketName, String objectName, String uploadId, Part[] parts) throws Exception {
+        join(completeMultipartUploadAsync(bucketName, null, objectName, uploadId, parts, null, null));
+    }
+
+    public void abort(String bucketName, String objectName, String uploadId) throws Exception {
+        join(abortMultipartUploadAsync(bucketName, null, objectName, uploadId, null, null));
+    }
+
+    private static <T> T join(CompletableFuture<T> request) throws Exception {
+        try {
+            return request.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,16 +1,46 @@
 package com.example.storage.controller;
 
+import com.example.storage.exception.StorageException;
+import com.example.storage.model.BatchDeleteResult;
+import com.example.storage.model.FileMetadata;
+import com.example.storage.model.MultipartUpload;
+import com.example.storage.model.ObjectPage;
+import com.example.storage.model.PresignedUrl;
+import com.example.storage.model.UploadedPart;
+import com.example.storage.service.MultipartUploadService;
 import com.example.storage.service.StorageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.apache.catalina.Globals;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
@@ -21,6 +51,11 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class StorageController {
 
     private final StorageService storageService;
+    private final MultipartUploadService multipartUploadService;
+
+    private static final String CONTENT_SHA256 = "X-Content-SHA256";
+    // Most parts a multipart/byteranges response is split into; requests for more get the whole file
+    private static final int MAX_RANGES = 16;
 
     @GetMapping("/")
     public String getMethodName() {
@@ -39,20 +74,174 @@ public class StorageController {
         return ResponseEntity.ok(response);
     }
 
+    // Stores a raw request body as the file, piping it to MinIO without multipart parsing or temp files
+    @PutMapping("/upload/stream")
+    public ResponseEntity<Map<String, String>> uploadFileStream(
+            @RequestParam("filename") String originalFilename,
+            @RequestHeader(value = HttpHeaders.CONTENT_TYPE, required = false) String contentType,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            @RequestHeader(value = CONTENT_SHA256, required = false) String sha256,
+            InputStream body) {
+        if (contentLength == null) {
+            throw new StorageException("Content-Length is required for streaming uploads");
+        }
+        String type = contentType != null ? contentType : MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        String filename = storageService.uploadFile(body, originalFilename, type, contentLength, sha256);
+        String fileUrl = storageService.getFileUrl(filename);
+
+        Map<String, String> response = new HashMap<>();
+        response.put("filename", filename);
+        response.put("url", fileUrl);
+        return ResponseEntity.ok(response);
+    }
+
+    // Hands out a URL the client uploads the file to directly, bypassing this service
+    @PostMapping("/presign/upload")
+    public ResponseEntity<PresignedUrl> presignUpload(@RequestParam("filename") String originalFilename,
+                                                      @RequestParam("size") long size) {
+        return ResponseEntity.ok(storageService.presignUpload(originalFilename, size));
+    }
+
+    @GetMapping("/presign/download/{filename}")
+    public ResponseEntity<PresignedUrl> presignDownload(@PathVariable String filename) {
+        return ResponseEntity.ok(storageService.presignDownload(filename));
+    }
+
+    // Size, content type and version of a stored file, used to verify direct uploads
+    @GetMapping("/metadata/{filename}")
+    public ResponseEntity<FileMetadata> getFileMetadata(@PathVariable String filename) {
+        return ResponseEntity.ok(storageService.getFileMetadata(filename));
+    }
+
+    // Resumable uploads: start, PUT each part as a raw body (in parallel if wanted), then complete or abort
+    @PostMapping("/multipart")
+    public ResponseEntity<MultipartUpload> initiateMultipartUpload(
+            @RequestParam("filename") String originalFilename,
+            @RequestParam(value = "contentType", defaultValue = MediaType.APPLICATION_OCTET_STREAM_VALUE) String contentType) {
+        return ResponseEntity.ok(multipartUploadService.initiate(originalFilename, contentType));
+    }
+
+    @PutMapping("/multipart/{filename}/parts/{partNumber}")
+    public ResponseEntity<UploadedPart> uploadPart(
+            @PathVariable String filename,
+            @PathVariable int partNumber,
+            @RequestParam("uploadId") String uploadId,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) Long contentLength,
+            InputStream body) {
+        if (contentLength == null) {
+            throw new StorageException("Content-Length is required for part uploads");
+        }
+        return ResponseEntity.ok(multipartUploadService.uploadPart(filename, uploadId, partNumber, body, contentLength));
+    }
+
+    @GetMapping("/multipart/{filename}/parts")
+    public ResponseEntity<List<UploadedPart>> listParts(@PathVariable String filename, @RequestParam("uploadId") String uploadId) {
+        return ResponseEntity.ok(multipartUploadService.listParts(filename, uploadId));
+    }
+
+    @PostMapping("/multipart/{filename}/complete")
+    public ResponseEntity<FileMetadata> completeMultipartUpload(@PathVariable String filename, @RequestParam("uploadId") String uploadId) {
+        return ResponseEntity.ok(multipartUploadService.complete(filename, uploadId));
+    }
+
+    @DeleteMapping("/multipart/{filename}")
+    public ResponseEntity<Void> abortMultipartUpload(@PathVariable String filename, @RequestParam("uploadId") String uploadId) {
+        multipartUploadService.abort(filename, uploadId);
+        return ResponseEntity.noContent().build();
+    }
+
     @GetMapping("/download/{filename}")
-    public ResponseEntity<byte[]> downloadFile(@PathVariable String filename) {
+    public ResponseEntity<Resource> downloadFile(
+            @PathVariable String filename,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            WebRequest request,
+            HttpServletRequest servletRequest) {
         // The service will throw StorageException if the file doesn't exist
-        byte[] data = storageService.downloadFile(filename);
-        
+        FileMetadata metadata = storageService.getFileMetadata(filename);
+        String etag = "\"" + metadata.getEtag() + "\"";
+        long lastModified = metadata.getLastModified().toInstant().toEpochMilli();
+
+        // Answers If-None-Match / If-Modified-Since with a 304 before any content is fetched
+        if (request.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        headers.setContentDispositionFormData("attachment", filename);
-        return new ResponseEntity<>(data, headers, HttpStatus.OK);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setETag(etag);
+        headers.setLastModified(lastModified);
+
+        long size = metadata.getSize();
+        List<HttpRange> ranges = null;
+        if (range != null && ifRangeMatches(ifRange, etag, lastModified)) {
+            try {
+                ranges = coalesce(HttpRange.parseRanges(range), size);
+            } catch (IllegalArgumentException e) {
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return new ResponseEntity<>(headers, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            }
+        }
+
+        if (ranges == null) {
+            // The stream is copied to the response through a fixed-size buffer and closed afterwards,
+            // so memory use does not grow with the file size
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.setContentDispositionFormData("attachment", filename);
+            headers.setContentLength(size);
+            Path cached = storageService.getCachedFileIfPresent(metadata, size);
+            if (cached != null) {
+                return sendCachedFile(servletRequest, cached, 0, size, headers, HttpStatus.OK);
+            }
+            // A miss is streamed to the client straight away, filling the cache on the way
+            InputStream content = storageService.downloadFileAndCache(metadata);
+            return new ResponseEntity<>(new InputStreamResource(content), headers, HttpStatus.OK);
+        }
+
+        if (ranges.size() == 1) {
+            long start = ranges.get(0).getRangeStart(size);
+            long end = ranges.get(0).getRangeEnd(size);
+            headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            headers.setContentLength(end - start + 1);
+            // Ranges are only served from the disk cache when the copy can be sent without reading it here
+            Path cached = sendfileSupported(servletRequest) ? storageService.getCachedFileIfPresent(metadata, end - start + 1) : null;
+            if (cached != null) {
+                return sendCachedFile(servletRequest, cached, start, end - start + 1, headers, HttpStatus.PARTIAL_CONTENT);
+            }
+            InputStream content = storageService.downloadFile(filename, start, end - start + 1);
+            return new ResponseEntity<>(new InputStreamResource(content), headers, HttpStatus.PARTIAL_CONTENT);
+        }
+
+        // Multiple ranges are sent as multipart/byteranges, fetching each range from MinIO only
+        // when the previous part has been written
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<InputStream> parts = new ArrayList<>();
+        long contentLength = 0;
+        for (HttpRange httpRange : ranges) {
+            long start = httpRange.getRangeStart(size);
+            long end = httpRange.getRangeEnd(size);
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + MediaType.APPLICATION_OCTET_STREAM_VALUE + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": bytes " + start + "-" + end + "/" + size + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            parts.add(new ByteArrayInputStream(partHeader));
+            parts.add(lazyStream(() -> storageService.downloadFile(filename, start, end - start + 1)));
+            contentLength += partHeader.length + end - start + 1;
+        }
+        byte[] closingBoundary = ("\r\n--" + boundary + "--").getBytes(StandardCharsets.US_ASCII);
+        parts.add(new ByteArrayInputStream(closingBoundary));
+        contentLength += closingBoundary.length;
+
+        headers.setContentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary));
+        headers.setContentLength(contentLength);
+        InputStream content = new SequenceInputStream(Collections.enumeration(parts));
+        return new ResponseEntity<>(new InputStreamResource(content), headers, HttpStatus.PARTIAL_CONTENT);
     }
 
     @DeleteMapping("/delete/{filename}")
     public ResponseEntity<Map<String, Boolean>> deleteFile(@PathVariable String filename) {
-        // The service will throw StorageException if the file doesn't exist
+        // Deleting is idempotent, a file that does not exist is reported as deleted
         boolean deleted = storageService.deleteFile(filename);
         
         Map<String, Boolean> response = new HashMap<>();
@@ -60,6 +249,19 @@ public class StorageController {
         return ResponseEntity.ok(response);
     }
     
+    // Deletes up to 1000 files in one MinIO request, reporting the files that could not be deleted
+    @PostMapping("/delete")
+    public ResponseEntity<BatchDeleteResult> deleteFiles(@RequestBody List<String> filenames) {
+        return ResponseEntity.ok(storageService.deleteFiles(filenames));
+    }
+    
+    // Pages through all stored files in key order, for reconciliation against the documents that reference them
+    @GetMapping("/objects")
+    public ResponseEntity<ObjectPage> listFiles(@RequestParam(value = "startAfter", required = false) String startAfter,
+                                                @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        return ResponseEntity.ok(storageService.listFiles(startAfter, limit));
+    }
+    
     @GetMapping("/check/{filename}")
     public ResponseEntity<Map<String, Boolean>> checkFileExists(@PathVariable String filename) {
         boolean exists = storageService.fileExists(filename);
@@ -68,4 +270,109 @@ public class StorageController {
         response.put("exists", exists);
         return ResponseEntity.ok(response);
     }
+
+    // Hands the copy to Tomcat's sendfile, which writes it to the socket with FileChannel.transferTo
+    // instead of copying it through the heap; other containers get it as a regular file response
+    private ResponseEntity<Resource> sendCachedFile(HttpServletRequest servletRequest, Path path, long start, long length,
+                                                    HttpHeaders headers, HttpStatus status) {
+        if (sendfileSupported(servletRequest)) {
+            servletRequest.setAttribute(Globals.SENDFILE_FILENAME_ATTR, path.toAbsolutePath().toString());
+            servletRequest.setAttribute(Globals.SENDFILE_FILE_START_ATTR, start);
+            servletRequest.setAttribute(Globals.SENDFILE_FILE_END_ATTR, start + length);
+            return new ResponseEntity<>(headers, status);
+        }
+        return new ResponseEntity<>(new FileSystemResource(path), headers, status);
+    }
+
+    private static boolean sendfileSupported(HttpServletRequest servletRequest) {
+        return Boolean.TRUE.equals(servletRequest.getAttribute(Globals.SENDFILE_SUPPORTED_ATTR));
+    }
+
+    /**
+     * Validates the requested ranges and merges those that overlap or touch, in ascending order.
+     *
+     * @return The ranges to send, or null if the whole file should be sent instead: more ranges than
+     *         MAX_RANGES, or ranges adding up to more than the file, as repeated overlapping ranges do
+     * @throws IllegalArgumentException If a range starts beyond the end of the file
+     */
+    private static List<HttpRange> coalesce(List<HttpRange> requested, long size) {
+        if (requested.isEmpty()) {
+            throw new IllegalArgumentException("No ranges requested");
+        }
+        long requestedBytes = 0;
+        List<long[]> bounds = new ArrayList<>();
+        for (HttpRange httpRange : requested) {
+            long start = httpRange.getRangeStart(size);
+            long end = httpRange.getRangeEnd(size);
+            if (start >= size || start > end) {
+                throw new IllegalArgumentException("Range starts beyond the end of the file: " + httpRange);
+            }
+            requestedBytes += end - start + 1;
+            bounds.add(new long[] {start, end});
+        }
+        if (requestedBytes > size) {
+            return null;
+        }
+
+        bounds.sort(Comparator.comparingLong(bound -> bound[0]));
+        List<HttpRange> ranges = new ArrayList<>();
+        long start = bounds.get(0)[0];
+        long end = bounds.get(0)[1];
+        for (long[] bound : bounds.subList(1, bounds.size())) {
+            if (bound[0] > end + 1) {
+                ranges.add(HttpRange.createByteRange(start, end));
+                start = bound[0];
+            }
+            end = Math.max(end, bound[1]);
+        }
+        ranges.add(HttpRange.createByteRange(start, end));
+        return ranges.size() <= MAX_RANGES ? ranges : null;
+    }
+
+    // A Range request is only honoured when If-Range is absent or still matches the stored object
+    private boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return ifRangeDate / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    // Defers opening the underlying stream until it is first read, so unread parts never hit MinIO
+    private static InputStream lazyStream(Supplier<InputStream> opener) {
+        return new InputStream() {
+            private InputStream delegate;
+
+            private InputStream delegate() {
+                if (delegate == null) {
+                    delegate = opener.get();
+                }
+                return delegate;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return delegate().read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return delegate().read(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (delegate != null) {
+                    delegate.close();
+                }
+            }
+        };
+    }
 }
\ No newline at end of file
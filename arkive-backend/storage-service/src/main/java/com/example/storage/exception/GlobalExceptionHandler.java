@@ -22,7 +22,9 @@ public class GlobalExceptionHandler {
         HttpStatus status;
         if (ex.getMessage().contains("not found")) {
             status = HttpStatus.NOT_FOUND;
-        } else if (ex.getMessage().contains("empty file") || ex.getMessage().contains("cannot be empty")) {
+        } else if (ex.getMessage().contains("empty file") || ex.getMessage().contains("cannot be empty")
+                || ex.getMessage().contains("is required") || ex.getMessage().contains("cannot exceed")
+                || ex.getMessage().contains("does not match")) {
             status = HttpStatus.BAD_REQUEST;
         } else {
             status = HttpStatus.INTERNAL_SERVER_ERROR;
@@ -0,0 +1,17 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchDeleteResult {
+    private List<String> deleted;
+    // Filename to the error MinIO reported for it
+    private Map<String, String> failed;
+}
@@ -0,0 +1,18 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FileMetadata {
+    private String filename;
+    private String contentType;
+    private long size;
+    private String etag;
+    private ZonedDateTime lastModified;
+}
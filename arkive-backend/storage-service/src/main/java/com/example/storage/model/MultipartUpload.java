@@ -0,0 +1,16 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MultipartUpload {
+    private String filename;
+    private String uploadId;
+
+    // Size clients should split the file into; every part but the last must be at least 5 MB
+    private long partSize;
+}
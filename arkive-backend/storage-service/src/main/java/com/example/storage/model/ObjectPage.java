@@ -0,0 +1,19 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectPage {
+    // In ascending key order, as MinIO lists them
+    private List<StoredObject> objects = new ArrayList<>();
+
+    // Pass as startAfter to get the next page; null on the last page
+    private String nextStartAfter;
+}
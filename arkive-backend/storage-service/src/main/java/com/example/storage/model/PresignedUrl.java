@@ -0,0 +1,18 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUrl {
+    // Name of the object the URL reads or writes
+    private String filename;
+    private String method;
+    private String url;
+    private ZonedDateTime expiresAt;
+}
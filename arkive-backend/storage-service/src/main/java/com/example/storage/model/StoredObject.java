@@ -0,0 +1,16 @@
+package com.example.storage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.ZonedDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StoredObject {
+    private String filename;
+    private long size;
+    private ZonedDateTime lastModified;
+}
@@ -0,0 +1,298 @@
+package com.example.storage.service;
+
+import com.example.storage.model.FileMetadata;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps copies of recently downloaded files on local disk, bounded by their total size, so hot
+ * files are served without transferring their content from MinIO again. A copy is written as the
+ * file is streamed to the first client, so a miss costs no extra latency. Entries are keyed by
+ * file name, and each download still stats the file in MinIO: a copy is only used while its ETag
+ * matches, so a replaced file is fetched again. Eviction follows Caffeine's W-TinyLFU policy,
+ * which keeps frequently downloaded files over one-off downloads. The index lives in memory, so
+ * the directory is emptied on startup.
+ */
+@Component
+@Slf4j
+public class DiskFileCache {
+
+    // Evicted copies are unlinked after this delay, so a sendfile that was just handed the path can still open it
+    static final Duration UNLINK_DELAY = Duration.ofSeconds(30);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxFileSize;
+    private final AsyncCache<String, CachedFile> cache;
+    // Hits and misses are recorded by getIfCached, as only it knows whether a copy could be served
+    private final StatsCounter stats = new ConcurrentStatsCounter();
+    private final Counter bytesSaved;
+    private final Executor unlinkExecutor = CompletableFuture.delayedExecutor(UNLINK_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+
+    public DiskFileCache(MeterRegistry meterRegistry,
+                         @Value("${storage.disk-cache.enabled:false}") boolean enabled,
+                         @Value("${storage.disk-cache.directory:${java.io.tmpdir}/arkive-storage-cache}") Path directory,
+                         @Value("${storage.disk-cache.max-size:10GB}") DataSize maxSize,
+                         @Value("${storage.disk-cache.max-file-size:256MB}") DataSize maxFileSize) throws IOException {
+        this.enabled = enabled;
+        this.directory = directory;
+        // Entries are weighed in bytes, and a weight has to fit in an int
+        this.maxFileSize = Math.min(maxFileSize.toBytes(), Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String filename, CachedFile file) -> (int) file.size)
+                .removalListener((String filename, CachedFile file, RemovalCause cause) -> {
+                    if (file != null) {
+                        unlinkExecutor.execute(() -> deleteQuietly(file.path));
+                    }
+                })
+                .recordStats(() -> stats)
+                .buildAsync();
+        this.bytesSaved = meterRegistry.counter("storage.disk-cache.bytes.saved");
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "storage.disk-cache");
+        meterRegistry.gauge("storage.disk-cache.bytes.used", cache,
+                c -> c.synchronous().policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L));
+
+        if (enabled) {
+            FileSystemUtils.deleteRecursively(directory);
+            Files.createDirectories(directory);
+            log.info("Caching up to {} of downloaded files in {}", maxSize, directory);
+        }
+    }
+
+    /**
+     * Copies a file into the cache as it is read from MinIO, so a miss is served straight away
+     * instead of after the whole file was downloaded. The copy is only kept once the stream was
+     * read to the end and held exactly the expected bytes. While another request is filling the
+     * cache for the same file, or the file cannot be cached, the content is returned unchanged.
+     *
+     * @param metadata The current metadata of the file, which the copy is recorded under
+     * @param content The file's content in MinIO
+     * @return A stream over the same content, which the caller closes as it would the original
+     */
+    public InputStream cacheWhileReading(FileMetadata metadata, InputStream content) {
+        if (!enabled || metadata.getSize() > maxFileSize) {
+            return content;
+        }
+
+        String filename = metadata.getFilename();
+        CompletableFuture<CachedFile> filling = new CompletableFuture<>();
+        CompletableFuture<CachedFile> existing = cache.asMap().putIfAbsent(filename, filling);
+        if (existing != null) {
+            // A copy of a version replaced in MinIO since is dropped, so this download caches the new content
+            CachedFile file = existing.isDone() ? join(existing) : null;
+            if (!existing.isDone() || file != null && file.etag.equals(metadata.getEtag())
+                    || !cache.asMap().replace(filename, existing, filling)) {
+                return content;
+            }
+        }
+
+        Path path = directory.resolve(UUID.randomUUID().toString());
+        try {
+            return new FillingInputStream(content, metadata, Files.newOutputStream(path), path, filling);
+        } catch (IOException e) {
+            log.warn("Could not cache {}: {}", filename, e.getMessage());
+            filling.completeExceptionally(e);
+            return content;
+        }
+    }
+
+    /**
+     * Returns the local copy of a file only if it is already cached, without downloading it.
+     * Used for range requests, which should not have to wait for the whole file.
+     *
+     * @param length The number of bytes about to be served from the copy
+     */
+    public Path getIfCached(FileMetadata metadata, long length) {
+        if (!enabled || metadata.getSize() > maxFileSize) {
+            return null;
+        }
+        // Looked up through asMap(), which records no stats: a copy still being filled or of a replaced
+        // version is a miss, although the cache holds an entry for the file
+        CompletableFuture<CachedFile> entry = cache.asMap().get(metadata.getFilename());
+        CachedFile file = entry != null && entry.isDone() ? join(entry) : null;
+        if (file == null || !file.etag.equals(metadata.getEtag())) {
+            stats.recordMisses(1);
+            return null;
+        }
+        stats.recordHits(1);
+        bytesSaved.increment(length);
+        return file.path;
+    }
+
+    /**
+     * Drops the cached copy of a file, such as after it was deleted from MinIO.
+     */
+    public void invalidate(String filename) {
+        cache.synchronous().invalidate(filename);
+    }
+
+    private static CachedFile join(CompletableFuture<CachedFile> entry) {
+        try {
+            return entry.join();
+        } catch (CompletionException e) {
+            return null;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete cached file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Writes everything read through it to the cache file, and records the copy once the content
+     * was read to the end. A failed cache write only stops the copy; the reader is unaffected.
+     */
+    private final class FillingInputStream extends FilterInputStream {
+        private final FileMetadata metadata;
+        private final Path path;
+        private final CompletableFuture<CachedFile> filling;
+        private OutputStream copy;
+        private long copied;
+
+        private FillingInputStream(InputStream content, FileMetadata metadata, OutputStream copy, Path path,
+                                   CompletableFuture<CachedFile> filling) {
+            super(content);
+            this.metadata = metadata;
+            this.copy = copy;
+            this.path = path;
+            this.filling = filling;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = readOrAbandon(() -> super.read());
+            if (b < 0) {
+                finish();
+            } else {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = readOrAbandon(() -> super.read(b, off, len));
+            if (n < 0) {
+                finish();
+            } else {
+                write(b, off, n);
+            }
+            return n;
+        }
+
+        // Skipped bytes never reach the copy
+        @Override
+        public long skip(long n) throws IOException {
+            abandon(new IOException("Content was skipped"));
+            return super.skip(n);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closed before the end, such as when the client went away
+            abandon(new IOException("Closed after " + copied + " of " + metadata.getSize() + " bytes"));
+            super.close();
+        }
+
+        private int readOrAbandon(IOCall read) throws IOException {
+            try {
+                return read.call();
+            } catch (IOException | RuntimeException e) {
+                abandon(e);
+                throw e;
+            }
+        }
+
+        private void write(byte[] b, int off, int len) {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.write(b, off, len);
+                copied += len;
+            } catch (IOException e) {
+                abandon(e);
+            }
+        }
+
+        private void finish() {
+            if (copy == null) {
+                return;
+            }
+            try {
+                copy.close();
+                copy = null;
+                if (copied != metadata.getSize()) {
+                    throw new IOException("Copied " + copied + " of " + metadata.getSize() + " bytes");
+                }
+                filling.complete(new CachedFile(metadata.getEtag(), path, copied));
+            } catch (IOException e) {
+                abandon(e);
+            }
+        }
+
+        private void abandon(Exception cause) {
+            if (filling.isDone()) {
+                return;
+            }
+            if (copy != null) {
+                try {
+                    copy.close();
+                } catch (IOException e) {
+                    cause.addSuppressed(e);
+                }
+                copy = null;
+            }
+            // A failed future is dropped from the cache, so the next request tries again
+            log.warn("Could not cache {}: {}", metadata.getFilename(), cause.getMessage());
+            deleteQuietly(path);
+            filling.completeExceptionally(cause);
+        }
+    }
+
+    @FunctionalInterface
+    private interface IOCall {
+        int call() throws IOException;
+    }
+
+    private static final class CachedFile {
+        private final String etag;
+        private final Path path;
+        private final long size;
+
+        private CachedFile(String etag, Path path, long size) {
+            this.etag = etag;
+            this.path = path;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.storage.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * Remembers recent existence checks for a short while, so repeated checks of the same file
+ * do not each stat it in MinIO. Uploads and deletes through this service update the entry;
+ * changes made directly in MinIO (presigned uploads, other replicas) show up once it expires.
+ */
+@Component
+public class FileExistsCache {
+
+    private final Cache<String, Boolean> cache;
+
+    public FileExistsCache(@Value("${storage.stat-cache.ttl:5s}") Duration ttl,
+                           @Value("${storage.stat-cache.max-size:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    // The lookup runs outside the cache: a loading get() would stat MinIO inside the map's bin lock,
+    // which blocks other keys in that bin and pins the carrier thread when running on virtual threads
+    public boolean exists(String filename, Predicate<String> lookup) {
+        Boolean cached = cache.getIfPresent(filename);
+        if (cached != null) {
+            return cached;
+        }
+        boolean exists = lookup.test(filename);
+        // An upload or delete recorded while the lookup ran is newer, so it is kept
+        Boolean recorded = cache.asMap().putIfAbsent(filename, exists);
+        return recorded != null ? recorded : exists;
+    }
+
+    public void stored(String filename) {
+        cache.put(filename, true);
+    }
+
+    public void removed(String filename) {
+        cache.put(filename, false);
+    }
+}
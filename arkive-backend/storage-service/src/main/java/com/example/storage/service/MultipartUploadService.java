@@ -0,0 +1,169 @@
+package com.example.storage.service;
+
+import com.example.storage.config.MinioConfig;
+import com.example.storage.config.MultipartMinioClient;
+import com.example.storage.exception.StorageException;
+import com.example.storage.model.FileMetadata;
+import com.example.storage.model.MultipartUpload;
+import com.example.storage.model.UploadedPart;
+import io.minio.messages.Part;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Resumable uploads of very large files, assembled by MinIO from parts sent in separate requests.
+ * Parts may be uploaded in parallel and in any order, and a part that failed is simply sent again.
+ */
+@Service
+@Slf4j
+public class MultipartUploadService {
+
+    private static final int MAX_PARTS = 10000;
+    // S3 requires every part but the last to be at least this large
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final long BUFFER_PERMIT_BYTES = 1024 * 1024;
+
+    private final MultipartMinioClient multipartMinioClient;
+    private final MinioConfig minioConfig;
+    private final StorageService storageService;
+    private final long partSize;
+    private final long maxPartSize;
+    private final long maxSize;
+    // No upload within maxSize can have more parts than this
+    private final int maxParts;
+
+    // Parts are buffered in memory while they are signed and sent, so the total buffered is capped
+    private final Semaphore partBuffers;
+
+    public MultipartUploadService(MultipartMinioClient multipartMinioClient,
+                                  MinioConfig minioConfig,
+                                  StorageService storageService,
+                                  @Value("${storage.multipart.part-size:16MB}") DataSize partSize,
+                                  @Value("${storage.multipart.max-part-size:64MB}") DataSize maxPartSize,
+                                  @Value("${storage.multipart.buffer-limit:512MB}") DataSize bufferLimit,
+                                  @Value("${storage.multipart.max-size:50GB}") DataSize maxSize) {
+        this.multipartMinioClient = multipartMinioClient;
+        this.minioConfig = minioConfig;
+        this.storageService = storageService;
+        this.partSize = partSize.toBytes();
+        this.maxPartSize = Math.min(maxPartSize.toBytes(), bufferLimit.toBytes());
+        this.maxSize = maxSize.toBytes();
+        this.maxParts = (int) Math.min(MAX_PARTS, this.maxSize / MIN_PART_SIZE + 1);
+        this.partBuffers = new Semaphore((int) (bufferLimit.toBytes() / BUFFER_PERMIT_BYTES), true);
+    }
+
+    public MultipartUpload initiate(String originalFilename, String contentType) {
+        String filename = StorageService.generateFilename(originalFilename);
+        try {
+            String uploadId = multipartMinioClient.initiate(minioConfig.getBucketName(), filename, contentType);
+            log.info("Started multipart upload {} for {}", uploadId, filename);
+            return new MultipartUpload(filename, uploadId, partSize);
+        } catch (Exception e) {
+            log.error("Error starting multipart upload: {}", e.getMessage());
+            throw new StorageException("Failed to start multipart upload", e);
+        }
+    }
+
+    public UploadedPart uploadPart(String filename, String uploadId, int partNumber, InputStream content, long size) {
+        if (partNumber < 1 || partNumber > maxParts) {
+            throw new StorageException("Part number is required to be between 1 and " + maxParts);
+        }
+        if (size <= 0) {
+            throw new StorageException("Part content cannot be empty");
+        }
+        if (size > maxPartSize) {
+            throw new StorageException("Part size cannot exceed " + DataSize.ofBytes(maxPartSize));
+        }
+
+        int permits = (int) ((size + BUFFER_PERMIT_BYTES - 1) / BUFFER_PERMIT_BYTES);
+        partBuffers.acquireUninterruptibly(permits);
+        try {
+            byte[] bytes = content.readNBytes((int) size);
+            if (bytes.length != size) {
+                throw new StorageException("Part content is required to match its Content-Length");
+            }
+            String etag = multipartMinioClient.uploadPart(minioConfig.getBucketName(), filename, uploadId, partNumber, bytes);
+            return new UploadedPart(partNumber, etag, size);
+        } catch (IOException e) {
+            log.error("Failed to read part content: {}", e.getMessage());
+            throw new StorageException("Failed to read part content", e);
+        } catch (StorageException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error uploading part {} of {}: {}", partNumber, filename, e.getMessage());
+            throw new StorageException("Failed to upload part " + partNumber, e);
+        } finally {
+            partBuffers.release(permits);
+        }
+    }
+
+    /**
+     * Parts MinIO has received so far. A client resuming after a dropped connection sends only the missing ones.
+     */
+    public List<UploadedPart> listParts(String filename, String uploadId) {
+        try {
+            return multipartMinioClient.listParts(minioConfig.getBucketName(), filename, uploadId).stream()
+                    .map(part -> new UploadedPart(part.partNumber(), part.etag(), part.partSize()))
+                    .toList();
+        } catch (Exception e) {
+            log.error("Error listing parts of {}: {}", filename, e.getMessage());
+            throw new StorageException("Upload not found: " + uploadId, e);
+        }
+    }
+
+    /**
+     * Assembles the uploaded parts into the file. Parts must be numbered 1 to n without gaps.
+     */
+    public FileMetadata complete(String filename, String uploadId) {
+        List<UploadedPart> parts = listParts(filename, uploadId);
+        if (parts.isEmpty()) {
+            throw new StorageException("Upload content cannot be empty");
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i).getPartNumber() != i + 1) {
+                throw new StorageException("Part " + (i + 1) + " is required to complete the upload");
+            }
+        }
+        long size = parts.stream().mapToLong(UploadedPart::getSize).sum();
+        if (size > maxSize) {
+            // The parts can never be assembled, so free the space they take up in MinIO
+            abortQuietly(filename, uploadId);
+            throw new StorageException("Upload size cannot exceed " + DataSize.ofBytes(maxSize));
+        }
+
+        try {
+            Part[] completed = parts.stream()
+                    .map(part -> new Part(part.getPartNumber(), part.getEtag()))
+                    .toArray(Part[]::new);
+            multipartMinioClient.complete(minioConfig.getBucketName(), filename, uploadId, completed);
+        } catch (Exception e) {
+            log.error("Error completing multipart upload of {}: {}", filename, e.getMessage());
+            throw new StorageException("Failed to complete multipart upload", e);
+        }
+        return storageService.getFileMetadata(filename);
+    }
+
+    public void abort(String filename, String uploadId) {
+        try {
+            multipartMinioClient.abort(minioConfig.getBucketName(), filename, uploadId);
+        } catch (Exception e) {
+            log.error("Error aborting multipart upload of {}: {}", filename, e.getMessage());
+            throw new StorageException("Upload not found: " + uploadId, e);
+        }
+    }
+
+    private void abortQuietly(String filename, String uploadId) {
+        try {
+            multipartMinioClient.abort(minioConfig.getBucketName(), filename, uploadId);
+        } catch (Exception e) {
+            log.warn("Could not abort multipart upload {} of {}: {}", uploadId, filename, e.getMessage());
+        }
+    }
+}
@@ -1,19 +1,44 @@
 package com.example.storage.service;
 
 import io.minio.*;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
+import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.example.storage.config.MinioConfig;
 import com.example.storage.exception.StorageException;
+import com.example.storage.model.BatchDeleteResult;
+import com.example.storage.model.FileMetadata;
+import com.example.storage.model.ObjectPage;
+import com.example.storage.model.PresignedUrl;
+import com.example.storage.model.StoredObject;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 import org.springframework.core.env.Environment;
 import java.util.Arrays;
 
@@ -25,6 +50,29 @@ public class StorageService {
     private final MinioClient minioClient;
     private final MinioConfig minioConfig;
     private final Environment environment;
+    private final FileExistsCache fileExistsCache;
+    private final DiskFileCache diskFileCache;
+
+    // The most keys MinIO accepts in one multi-object delete request
+    static final int MAX_BATCH_DELETE = 1000;
+    // The most keys MinIO returns in one list request
+    static final int MAX_LIST_PAGE = 1000;
+    static final String CONTENT_ADDRESSED_PREFIX = "sha256-";
+    static final String TEMP_PREFIX = "upload-";
+    private static final Pattern SHA256_HEX = Pattern.compile("[0-9a-f]{64}");
+
+    // Name objects by the SHA-256 of their content so identical uploads share one object
+    @Value("${storage.content-addressed.enabled:false}")
+    private boolean contentAddressed;
+
+    @Value("${storage.presign.upload-expiry:15m}")
+    private Duration presignedUploadExpiry;
+
+    @Value("${storage.presign.download-expiry:5m}")
+    private Duration presignedDownloadExpiry;
+
+    @Value("${storage.presign.max-upload-size:5GB}")
+    private DataSize presignedMaxUploadSize;
     
     private boolean isTestEnvironment() {
         return Arrays.asList(environment.getActiveProfiles()).contains("test");
@@ -68,89 +116,309 @@ public class StorageService {
         }
         
         try {
-            String filename = generateFilename(file.getOriginalFilename());
+            return uploadFile(file.getInputStream(), file.getOriginalFilename(), file.getContentType(), file.getSize());
+        } catch (IOException e) {
+            log.error("Failed to read file content: {}", e.getMessage());
+            throw new StorageException("Failed to read file content", e);
+        }
+    }
+
+    /**
+     * Stores content read straight from a stream, such as a raw request body. MinIO consumes
+     * the stream as it is read, so the file is never spooled to a temp file here.
+     */
+    public String uploadFile(InputStream content, String originalFilename, String contentType, long size) {
+        return uploadFile(content, originalFilename, contentType, size, null);
+    }
+
+    /**
+     * Stores streamed content, checking it against the SHA-256 the client declared, if any.
+     * In content-addressed mode the object is named after the digest of its content, so
+     * uploading the same bytes again returns the existing object instead of a new copy.
+     */
+    public String uploadFile(InputStream content, String originalFilename, String contentType, long size,
+                             String expectedSha256) {
+        if (size <= 0) {
+            throw new StorageException("Failed to upload empty file");
+        }
+        String expected = expectedSha256 != null ? normalizeSha256(expectedSha256) : null;
+        if (!contentAddressed) {
+            String filename = generateFilename(originalFilename);
+            String sha256 = putObject(filename, content, originalFilename, contentType, size);
+            if (expected != null && !expected.equals(sha256)) {
+                removeQuietly(filename);
+                throw new StorageException("Content does not match the declared SHA-256");
+            }
+            fileExistsCache.stored(filename);
+            return filename;
+        }
+
+        // The digest is only known once the stream has been read, so the content lands under a
+        // temporary name and is copied to its digest name unless that object already exists.
+        // Writing to the digest name directly would let a bad upload overwrite a good object.
+        String tempFilename = TEMP_PREFIX + UUID.randomUUID();
+        String sha256 = putObject(tempFilename, content, originalFilename, contentType, size);
+        try {
+            if (expected != null && !expected.equals(sha256)) {
+                throw new StorageException("Content does not match the declared SHA-256");
+            }
+            String filename = contentAddressedFilename(sha256, originalFilename);
+            // Checked against MinIO itself: a stale cache entry could dedupe to a file deleted meanwhile
+            if (statExists(filename)) {
+                log.debug("Upload of {} deduplicated to existing object {}", originalFilename, filename);
+            } else {
+                minioClient.copyObject(
+                        CopyObjectArgs.builder()
+                                .bucket(minioConfig.getBucketName())
+                                .object(filename)
+                                .source(CopySource.builder()
+                                        .bucket(minioConfig.getBucketName())
+                                        .object(tempFilename)
+                                        .build())
+                                .build());
+            }
+            fileExistsCache.stored(filename);
+            return filename;
+        } catch (StorageException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error storing file under its digest: {}", e.getMessage());
+            throw new StorageException("Failed to upload file", e);
+        } finally {
+            removeQuietly(tempFilename);
+        }
+    }
+
+    private String putObject(String filename, InputStream content, String originalFilename, String contentType, long size) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
             Map<String, String> metadata = new HashMap<>();
-            metadata.put("Content-Type", file.getContentType());
-            metadata.put("X-Amz-Meta-Original-Filename", file.getOriginalFilename());
+            metadata.put("Content-Type", contentType);
+            metadata.put("X-Amz-Meta-Original-Filename", originalFilename);
 
             minioClient.putObject(
                     PutObjectArgs.builder()
                             .bucket(minioConfig.getBucketName())
                             .object(filename)
-                            .stream(file.getInputStream(), file.getSize(), -1)
-                            .contentType(file.getContentType())
+                            .stream(new DigestInputStream(content, digest), size, -1)
+                            .contentType(contentType)
                             .headers(metadata)
                             .build());
 
-            return filename;
-        } catch (IOException e) {
-            log.error("Failed to read file content: {}", e.getMessage());
-            throw new StorageException("Failed to read file content", e);
+            return HexFormat.of().formatHex(digest.digest());
         } catch (Exception e) {
             log.error("Error uploading file: {}", e.getMessage());
             throw new StorageException("Failed to upload file", e);
         }
     }
 
-    public byte[] downloadFile(String filename) {
+    private void removeQuietly(String filename) {
+        try {
+            minioClient.removeObject(
+                    RemoveObjectArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(filename)
+                            .build());
+        } catch (Exception e) {
+            log.warn("Could not remove {}: {}", filename, e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the size, content type and version information of a stored file without fetching its content
+     */
+    public FileMetadata getFileMetadata(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            throw new StorageException("Filename cannot be empty");
+        }
+
+        try {
+            StatObjectResponse stat = minioClient.statObject(
+                StatObjectArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .object(filename)
+                    .build()
+            );
+            return new FileMetadata(filename, stat.contentType(), stat.size(), stat.etag(), stat.lastModified());
+        } catch (Exception e) {
+            log.error("Error reading file metadata: {}", e.getMessage());
+            throw new StorageException("File not found or could not be downloaded: " + filename, e);
+        }
+    }
+
+    /**
+     * Opens a stream over the file content. The caller is responsible for closing it,
+     * which releases the underlying MinIO connection.
+     */
+    public InputStream downloadFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             throw new StorageException("Filename cannot be empty");
         }
         
         try {
-            GetObjectResponse response = minioClient.getObject(
+            return minioClient.getObject(
                     GetObjectArgs.builder()
                             .bucket(minioConfig.getBucketName())
                             .object(filename)
                             .build());
-
-            return response.readAllBytes();
         } catch (Exception e) {
             log.error("Error downloading file: {}", e.getMessage());
             throw new StorageException("File not found or could not be downloaded: " + filename, e);
         }
     }
 
+    /**
+     * Opens a stream over a byte range of the file content. Only the requested range is
+     * transferred from MinIO. The caller is responsible for closing the stream.
+     */
+    public InputStream downloadFile(String filename, long offset, long length) {
+        if (filename == null || filename.isEmpty()) {
+            throw new StorageException("Filename cannot be empty");
+        }
+
+        try {
+            return minioClient.getObject(
+                    GetObjectArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(filename)
+                            .offset(offset)
+                            .length(length)
+                            .build());
+        } catch (Exception e) {
+            log.error("Error downloading file range: {}", e.getMessage());
+            throw new StorageException("File not found or could not be downloaded: " + filename, e);
+        }
+    }
+
+    /**
+     * Opens a stream over the file content like downloadFile, copying it into the disk cache as
+     * it is read, so later downloads can be served from disk. The caller closes the stream.
+     */
+    public InputStream downloadFileAndCache(FileMetadata metadata) {
+        return diskFileCache.cacheWhileReading(metadata, downloadFile(metadata.getFilename()));
+    }
+
+    /**
+     * Returns a local copy of the file only if the disk cache already holds it.
+     *
+     * @param length The number of bytes about to be served from the copy
+     */
+    public Path getCachedFileIfPresent(FileMetadata metadata, long length) {
+        return diskFileCache.getIfCached(metadata, length);
+    }
+
+    /**
+     * Removes a file in a single MinIO call. Like S3, MinIO reports success whether or not the
+     * object existed, so deleting a missing file succeeds: the file is gone either way.
+     */
     public boolean deleteFile(String filename) {
         if (filename == null || filename.isEmpty()) {
             throw new StorageException("Filename cannot be empty");
         }
         
         try {
-            // Check if the file exists before deleting
-            minioClient.statObject(
-                StatObjectArgs.builder()
-                    .bucket(minioConfig.getBucketName())
-                    .object(filename)
-                    .build()
-            );
-            
             minioClient.removeObject(
                     RemoveObjectArgs.builder()
                             .bucket(minioConfig.getBucketName())
                             .object(filename)
                             .build());
+            fileExistsCache.removed(filename);
+            diskFileCache.invalidate(filename);
             return true;
         } catch (Exception e) {
             log.error("Error deleting file: {}", e.getMessage());
-            throw new StorageException("File not found or could not be deleted: " + filename, e);
+            throw new StorageException("File could not be deleted: " + filename, e);
+        }
+    }
+
+    /**
+     * Removes many files with MinIO's multi-object delete, one request for up to
+     * {@value #MAX_BATCH_DELETE} keys. As with single deletes, missing files count as deleted.
+     */
+    public BatchDeleteResult deleteFiles(List<String> filenames) {
+        if (filenames == null || filenames.isEmpty()) {
+            throw new StorageException("At least one filename is required");
+        }
+        if (filenames.size() > MAX_BATCH_DELETE) {
+            throw new StorageException("A batch delete cannot exceed " + MAX_BATCH_DELETE + " files");
+        }
+        if (filenames.stream().anyMatch(filename -> filename == null || filename.isEmpty())) {
+            throw new StorageException("Filename cannot be empty");
+        }
+
+        List<String> distinct = filenames.stream().distinct().toList();
+        List<DeleteObject> objects = distinct.stream().map(DeleteObject::new).toList();
+        Map<String, String> failed = new LinkedHashMap<>();
+        try {
+            // The request is only sent once the results are iterated; only failed keys are returned
+            Iterable<Result<DeleteError>> results = minioClient.removeObjects(
+                    RemoveObjectsArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .objects(objects)
+                            .build());
+            for (Result<DeleteError> result : results) {
+                DeleteError error = result.get();
+                failed.put(error.objectName(), error.message());
+            }
+        } catch (Exception e) {
+            log.error("Error deleting files: {}", e.getMessage());
+            throw new StorageException("Files could not be deleted", e);
+        }
+
+        List<String> deleted = new ArrayList<>();
+        for (String filename : distinct) {
+            if (!failed.containsKey(filename)) {
+                fileExistsCache.removed(filename);
+                diskFileCache.invalidate(filename);
+                deleted.add(filename);
+            }
+        }
+        return new BatchDeleteResult(deleted, failed);
+    }
+
+    /**
+     * Lists one page of stored files in ascending key order (byte order of the UTF-8 names),
+     * starting after the given key. Only this page is fetched from MinIO.
+     */
+    public ObjectPage listFiles(String startAfter, int limit) {
+        if (limit <= 0 || limit > MAX_LIST_PAGE) {
+            throw new StorageException("Page size is required to be between 1 and " + MAX_LIST_PAGE);
+        }
+
+        try {
+            ListObjectsArgs.Builder args = ListObjectsArgs.builder()
+                    .bucket(minioConfig.getBucketName())
+                    .recursive(true)
+                    .maxKeys(limit);
+            if (startAfter != null && !startAfter.isEmpty()) {
+                args.startAfter(startAfter);
+            }
+
+            // The iterable requests further pages lazily, so stopping at the limit keeps this to one request
+            List<StoredObject> objects = new ArrayList<>();
+            Iterator<Result<Item>> results = minioClient.listObjects(args.build()).iterator();
+            while (objects.size() < limit && results.hasNext()) {
+                Item item = results.next().get();
+                objects.add(new StoredObject(item.objectName(), item.size(), item.lastModified()));
+            }
+            String nextStartAfter = objects.size() == limit ? objects.get(limit - 1).getFilename() : null;
+            return new ObjectPage(objects, nextStartAfter);
+        } catch (Exception e) {
+            log.error("Error listing files: {}", e.getMessage());
+            throw new StorageException("Files could not be listed", e);
         }
     }
 
+    /**
+     * Signs a GET URL for the file. Signing happens locally, so the object is not checked;
+     * a missing file surfaces as a 404 from MinIO when the URL is used.
+     */
     public String getFileUrl(String filename) {
         if (filename == null || filename.isEmpty()) {
             throw new StorageException("Filename cannot be empty");
         }
         
         try {
-            // Verify file exists before generating URL
-            minioClient.statObject(
-                StatObjectArgs.builder()
-                    .bucket(minioConfig.getBucketName())
-                    .object(filename)
-                    .build()
-            );
-            
             return minioClient.getPresignedObjectUrl(
                     GetPresignedObjectUrlArgs.builder()
                             .bucket(minioConfig.getBucketName())
@@ -159,14 +427,62 @@ public class StorageService {
                             .build());
         } catch (Exception e) {
             log.error("Error generating URL: {}", e.getMessage());
-            throw new StorageException("File not found or URL could not be generated: " + filename, e);
+            throw new StorageException("URL could not be generated: " + filename, e);
+        }
+    }
+
+    /**
+     * Generates a URL the client can PUT the file to directly, under a new object name.
+     * The URL cannot enforce the declared size or type; callers verify the stored object afterwards.
+     */
+    public PresignedUrl presignUpload(String originalFilename, long size) {
+        if (size <= 0) {
+            throw new StorageException("Failed to upload empty file");
+        }
+        if (size > presignedMaxUploadSize.toBytes()) {
+            throw new StorageException("File size cannot exceed " + presignedMaxUploadSize);
         }
+
+        return presign(generateFilename(originalFilename), io.minio.http.Method.PUT, presignedUploadExpiry);
     }
 
     /**
-     * Check if a file exists in MinIO
+     * Generates a URL the client can GET the file from directly. The object is not checked,
+     * a missing file surfaces as a 404 from MinIO when the URL is used.
+     */
+    public PresignedUrl presignDownload(String filename) {
+        if (filename == null || filename.isEmpty()) {
+            throw new StorageException("Filename cannot be empty");
+        }
+
+        return presign(filename, io.minio.http.Method.GET, presignedDownloadExpiry);
+    }
+
+    private PresignedUrl presign(String filename, io.minio.http.Method method, Duration expiry) {
+        try {
+            ZonedDateTime expiresAt = ZonedDateTime.now(ZoneOffset.UTC).plus(expiry);
+            String url = minioConfig.getPresignClient().getPresignedObjectUrl(
+                    GetPresignedObjectUrlArgs.builder()
+                            .bucket(minioConfig.getBucketName())
+                            .object(filename)
+                            .method(method)
+                            .expiry((int) expiry.toSeconds(), TimeUnit.SECONDS)
+                            .build());
+            return new PresignedUrl(filename, method.name(), url, expiresAt);
+        } catch (Exception e) {
+            log.error("Error generating URL: {}", e.getMessage());
+            throw new StorageException("URL could not be generated: " + filename, e);
+        }
+    }
+
+    /**
+     * Check if a file exists in MinIO. Answers from the short-lived stat cache when it can.
      */
     public boolean fileExists(String filename) {
+        return fileExistsCache.exists(filename, this::statExists);
+    }
+
+    private boolean statExists(String filename) {
         try {
             minioClient.statObject(
                 StatObjectArgs.builder()
@@ -180,12 +496,24 @@ public class StorageService {
         }
     }
 
-    private String generateFilename(String originalFilename) {
+    static String contentAddressedFilename(String sha256, String originalFilename) {
+        return CONTENT_ADDRESSED_PREFIX + sha256 + getFileExtension(originalFilename);
+    }
+
+    private static String normalizeSha256(String sha256) {
+        String normalized = sha256.trim().toLowerCase(Locale.ROOT);
+        if (!SHA256_HEX.matcher(normalized).matches()) {
+            throw new StorageException("SHA-256 is required to be 64 hex digits");
+        }
+        return normalized;
+    }
+
+    static String generateFilename(String originalFilename) {
         String extension = getFileExtension(originalFilename);
         return UUID.randomUUID().toString() + extension;
     }
 
-    private String getFileExtension(String filename) {
+    private static String getFileExtension(String filename) {
         if (filename == null || filename.lastIndexOf(".") == -1) {
             return "";
         }
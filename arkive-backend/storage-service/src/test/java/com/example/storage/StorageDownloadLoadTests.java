@@ -0,0 +1,156 @@
+package com.example.storage;
+
+import com.example.storage.config.TestMinioConfig;
+import io.minio.GetObjectArgs;
+import io.minio.GetObjectResponse;
+import io.minio.MinioClient;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import okhttp3.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Downloads many large files concurrently and checks that the live heap stays flat while they are
+ * all in flight, i.e. file content is streamed through the service instead of being buffered.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(TestMinioConfig.class)
+@ActiveProfiles("test")
+class StorageDownloadLoadTests {
+
+    private static final int CONCURRENT_DOWNLOADS = 50;
+    private static final long FILE_SIZE = 50L * 1024 * 1024;
+    private static final long MAX_LIVE_HEAP_GROWTH = 128L * 1024 * 1024;
+
+    @Autowired
+    private MinioClient minioClient;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void concurrentLargeDownloadsKeepHeapFlat() throws Exception {
+        StatObjectResponse stat = mock(StatObjectResponse.class);
+        when(stat.size()).thenReturn(FILE_SIZE);
+        when(stat.etag()).thenReturn("d41d8cd98f00b204e9800998ecf8427e");
+        when(stat.lastModified()).thenReturn(ZonedDateTime.now());
+        when(minioClient.statObject(any(StatObjectArgs.class))).thenReturn(stat);
+        when(minioClient.getObject(any(GetObjectArgs.class))).thenAnswer(invocation -> {
+            GetObjectArgs args = invocation.getArgument(0);
+            return new GetObjectResponse(Headers.of(), args.bucket(), null, args.object(), syntheticContent(FILE_SIZE));
+        });
+
+        long baseline = liveHeap();
+        // Every download stops halfway until the heap has been measured, so all of them are in flight at once
+        CountDownLatch halfway = new CountDownLatch(CONCURRENT_DOWNLOADS);
+        CountDownLatch measured = new CountDownLatch(1);
+
+        HttpClient client = HttpClient.newHttpClient();
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_DOWNLOADS);
+        long growth;
+        try {
+            List<Future<Long>> downloads = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_DOWNLOADS; i++) {
+                URI uri = URI.create("http://localhost:" + port + "/api/storage/download/file-" + i + ".pdf");
+                downloads.add(executor.submit(() -> drain(client, uri, halfway, measured)));
+            }
+            assertTrue(halfway.await(5, TimeUnit.MINUTES), "Downloads did not get halfway");
+            growth = liveHeap() - baseline;
+            measured.countDown();
+            for (Future<Long> download : downloads) {
+                assertEquals(FILE_SIZE, download.get(5, TimeUnit.MINUTES));
+            }
+        } finally {
+            measured.countDown();
+            executor.shutdownNow();
+        }
+
+        assertTrue(growth < MAX_LIVE_HEAP_GROWTH,
+                "Live heap grew by " + (growth >> 20) + " MB with " + CONCURRENT_DOWNLOADS
+                        + " downloads of " + (FILE_SIZE >> 20) + " MB halfway through");
+    }
+
+    private static long drain(HttpClient client, URI uri, CountDownLatch halfway, CountDownLatch measured) throws Exception {
+        HttpResponse<InputStream> response = client.send(
+                HttpRequest.newBuilder(uri).GET().build(), HttpResponse.BodyHandlers.ofInputStream());
+        assertEquals(200, response.statusCode());
+        assertEquals(FILE_SIZE, response.headers().firstValueAsLong("Content-Length").orElse(-1));
+
+        long total = 0;
+        byte[] buffer = new byte[8192];
+        try (InputStream body = response.body()) {
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                if (total < FILE_SIZE / 2 && total + read >= FILE_SIZE / 2) {
+                    halfway.countDown();
+                    measured.await();
+                }
+                total += read;
+            }
+        }
+        return total;
+    }
+
+    // Heap still in use after a full collection, which leaves only what is reachable
+    private static long liveHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static InputStream syntheticContent(long size) {
+        return new InputStream() {
+            private long remaining = size;
+
+            @Override
+            public int read() {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                remaining--;
+                return 'a';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = (int) Math.min(len, remaining);
+                Arrays.fill(b, off, off + n, (byte) 'a');
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+}
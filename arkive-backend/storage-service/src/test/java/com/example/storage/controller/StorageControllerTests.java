@@ -1,6 +1,13 @@
 package com.example.storage.controller;
 
+import com.example.storage.model.BatchDeleteResult;
+import com.example.storage.model.FileMetadata;
+import com.example.storage.model.MultipartUpload;
+import com.example.storage.model.PresignedUrl;
+import com.example.storage.model.UploadedPart;
+import com.example.storage.service.MultipartUploadService;
 import com.example.storage.service.StorageService;
+import org.apache.catalina.Globals;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
@@ -10,14 +17,31 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @WebMvcTest(StorageController.class)
 public class StorageControllerTests {
@@ -25,9 +49,14 @@ public class StorageControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    private static final String ETAG = "5d41402abc4b2a76b9719d911017c592";
+
     @MockBean
     private StorageService storageService;
 
+    @MockBean
+    private MultipartUploadService multipartUploadService;
+
     @Test
     public void testUploadFile() throws Exception {
         // Create a mock file
@@ -50,17 +79,123 @@ public class StorageControllerTests {
                 .andExpect(jsonPath("$.url").value("http://storage-url/test-file-uuid.pdf"));
     }
 
+    @Test
+    public void testUploadFileStream() throws Exception {
+        byte[] fileData = "streamed file content".getBytes();
+        when(storageService.uploadFile(any(InputStream.class), eq("report.pdf"), anyString(), eq((long) fileData.length), isNull()))
+                .thenReturn("test-file-uuid.pdf");
+        when(storageService.getFileUrl("test-file-uuid.pdf")).thenReturn("http://storage-url/test-file-uuid.pdf");
+
+        mockMvc.perform(put("/api/storage/upload/stream")
+                .param("filename", "report.pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .content(fileData))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename").value("test-file-uuid.pdf"));
+    }
+
+    @Test
+    public void testUploadFileStreamWithoutContentLength() throws Exception {
+        mockMvc.perform(put("/api/storage/upload/stream")
+                .param("filename", "report.pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .content("streamed file content".getBytes())
+                .with(request -> {
+                    // Mirrors a chunked request, which carries no Content-Length
+                    request.removeHeader("Content-Length");
+                    return request;
+                }))
+                .andExpect(status().isBadRequest());
+
+        verify(storageService, never()).uploadFile(any(InputStream.class), anyString(), anyString(), anyLong(), any());
+    }
+
+    @Test
+    public void testUploadFileStreamPassesDeclaredDigest() throws Exception {
+        byte[] fileData = "streamed file content".getBytes();
+        String sha256 = "0".repeat(64);
+        when(storageService.uploadFile(any(InputStream.class), eq("report.pdf"), anyString(), eq((long) fileData.length), eq(sha256)))
+                .thenReturn("sha256-" + sha256 + ".pdf");
+
+        mockMvc.perform(put("/api/storage/upload/stream")
+                .param("filename", "report.pdf")
+                .header("X-Content-SHA256", sha256)
+                .contentType(MediaType.APPLICATION_PDF)
+                .content(fileData))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename").value("sha256-" + sha256 + ".pdf"));
+    }
+
+    @Test
+    public void testPresignUpload() throws Exception {
+        when(storageService.presignUpload("report.pdf", 2048L)).thenReturn(new PresignedUrl(
+                "test-file-uuid.pdf", "PUT", "http://minio/arkive-documents/test-file-uuid.pdf?X-Amz-Signature=abc", ZonedDateTime.now()));
+
+        mockMvc.perform(post("/api/storage/presign/upload")
+                .param("filename", "report.pdf")
+                .param("size", "2048"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.filename").value("test-file-uuid.pdf"))
+                .andExpect(jsonPath("$.method").value("PUT"));
+    }
+
+    @Test
+    public void testFileMetadata() throws Exception {
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(2048));
+
+        mockMvc.perform(get("/api/storage/metadata/test-file.pdf"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(2048))
+                .andExpect(jsonPath("$.etag").value(ETAG));
+    }
+
+    @Test
+    public void testMultipartUpload() throws Exception {
+        when(multipartUploadService.initiate("archive.tar", "application/x-tar"))
+                .thenReturn(new MultipartUpload("test-file-uuid.tar", "upload-1", 16 << 20));
+        when(multipartUploadService.uploadPart(eq("test-file-uuid.tar"), eq("upload-1"), eq(2), any(InputStream.class), eq(4L)))
+                .thenReturn(new UploadedPart(2, "etag-2", 4));
+        when(multipartUploadService.complete("test-file-uuid.tar", "upload-1")).thenReturn(metadata(2048));
+
+        mockMvc.perform(post("/api/storage/multipart")
+                .param("filename", "archive.tar")
+                .param("contentType", "application/x-tar"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uploadId").value("upload-1"));
+
+        mockMvc.perform(put("/api/storage/multipart/test-file-uuid.tar/parts/2")
+                .param("uploadId", "upload-1")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] {1, 2, 3, 4}))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.etag").value("etag-2"));
+
+        mockMvc.perform(post("/api/storage/multipart/test-file-uuid.tar/complete")
+                .param("uploadId", "upload-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size").value(2048));
+
+        mockMvc.perform(delete("/api/storage/multipart/test-file-uuid.tar")
+                .param("uploadId", "upload-1"))
+                .andExpect(status().isNoContent());
+        verify(multipartUploadService).abort("test-file-uuid.tar", "upload-1");
+    }
+
     @Test
     public void testDownloadFile() throws Exception {
         // Mock file data
         byte[] fileData = "test file content".getBytes();
         
         // Mock the storage service response
-        when(storageService.downloadFile("test-file.pdf")).thenReturn(fileData);
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFileAndCache(any())).thenReturn(new ByteArrayInputStream(fileData));
 
         // Perform the GET request and validate just the status and content
         MvcResult result = mockMvc.perform(get("/api/storage/download/test-file.pdf"))
                 .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", fileData.length))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("ETag", "\"" + ETAG + "\""))
                 .andReturn();
         
         // Verify the content matches without being strict about the headers
@@ -72,6 +207,119 @@ public class StorageControllerTests {
         // .andExpect(header().string("Content-Disposition", "attachment; filename=\"test-file.pdf\""))
     }
 
+    @Test
+    public void testDownloadFileFromDiskCacheUsesSendfile() throws Exception {
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(17));
+        when(storageService.getCachedFileIfPresent(any(), eq(17L))).thenReturn(Path.of("/var/cache/arkive/copy"));
+
+        MvcResult result = mockMvc.perform(get("/api/storage/download/test-file.pdf")
+                        .requestAttr(Globals.SENDFILE_SUPPORTED_ATTR, true))
+                .andExpect(status().isOk())
+                .andExpect(header().longValue("Content-Length", 17))
+                .andReturn();
+
+        // Tomcat writes the body from the file once the handler returns
+        assertEquals("/var/cache/arkive/copy", result.getRequest().getAttribute(Globals.SENDFILE_FILENAME_ATTR));
+        assertEquals(0L, result.getRequest().getAttribute(Globals.SENDFILE_FILE_START_ATTR));
+        assertEquals(17L, result.getRequest().getAttribute(Globals.SENDFILE_FILE_END_ATTR));
+        verify(storageService, never()).downloadFileAndCache(any());
+    }
+
+    @Test
+    public void testDownloadFileRange() throws Exception {
+        byte[] fileData = "test file content".getBytes();
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFile("test-file.pdf", 5, 4))
+                .thenReturn(new ByteArrayInputStream(Arrays.copyOfRange(fileData, 5, 9)));
+
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=5-8"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 5-8/" + fileData.length))
+                .andExpect(header().longValue("Content-Length", 4))
+                .andExpect(content().string("file"));
+    }
+
+    @Test
+    public void testDownloadFileMultipleRanges() throws Exception {
+        byte[] fileData = "test file content".getBytes();
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFile("test-file.pdf", 0, 4))
+                .thenReturn(new ByteArrayInputStream(Arrays.copyOfRange(fileData, 0, 4)));
+        when(storageService.downloadFile("test-file.pdf", 10, 7))
+                .thenReturn(new ByteArrayInputStream(Arrays.copyOfRange(fileData, 10, 17)));
+
+        MvcResult result = mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=0-3,-7"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Type", startsWith("multipart/byteranges;boundary=")))
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertEquals(body.length(), result.getResponse().getContentLength());
+        assertTrue(body.contains("Content-Range: bytes 0-3/17\r\n\r\ntest"));
+        assertTrue(body.contains("Content-Range: bytes 10-16/17\r\n\r\ncontent"));
+    }
+
+    @Test
+    public void testDownloadFileOverlappingRangesAreCoalesced() throws Exception {
+        byte[] fileData = "test file content".getBytes();
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFile("test-file.pdf", 0, 9))
+                .thenReturn(new ByteArrayInputStream(Arrays.copyOfRange(fileData, 0, 9)));
+
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=5-8,0-3,2-6"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 0-8/" + fileData.length))
+                .andExpect(content().string("test file"));
+    }
+
+    @Test
+    public void testDownloadFileWithTooManyRangesGetsTheWholeFile() throws Exception {
+        byte[] fileData = new byte[100];
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFileAndCache(any())).thenReturn(new ByteArrayInputStream(fileData));
+        // 17 separate single-byte ranges, one more than are sent as parts
+        String ranges = IntStream.range(0, 17).mapToObj(i -> (2 * i) + "-" + (2 * i)).collect(Collectors.joining(","));
+
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=" + ranges))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(header().longValue("Content-Length", fileData.length));
+        verify(storageService, never()).downloadFile(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDownloadFileWithRangesLargerThanTheFileGetsTheWholeFile() throws Exception {
+        byte[] fileData = "test file content".getBytes();
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(fileData.length));
+        when(storageService.downloadFileAndCache(any())).thenReturn(new ByteArrayInputStream(fileData));
+
+        // The same range repeated adds up to more bytes than the file holds
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=0-9,0-9"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andExpect(content().bytes(fileData));
+        verify(storageService, never()).downloadFile(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDownloadFileUnsatisfiableRange() throws Exception {
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(17));
+
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("Range", "bytes=100-200"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */17"));
+        verify(storageService, never()).downloadFile(anyString(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void testDownloadFileNotModified() throws Exception {
+        when(storageService.getFileMetadata("test-file.pdf")).thenReturn(metadata(17));
+
+        mockMvc.perform(get("/api/storage/download/test-file.pdf").header("If-None-Match", "\"" + ETAG + "\""))
+                .andExpect(status().isNotModified());
+        verify(storageService, never()).downloadFileAndCache(any());
+    }
+
     @Test
     public void testDeleteFile() throws Exception {
         // Mock the service response
@@ -83,6 +331,19 @@ public class StorageControllerTests {
                 .andExpect(jsonPath("$.deleted").value(true));
     }
 
+    @Test
+    public void testDeleteFiles() throws Exception {
+        when(storageService.deleteFiles(List.of("a.pdf", "b.pdf"))).thenReturn(
+                new BatchDeleteResult(List.of("a.pdf"), Map.of("b.pdf", "Access Denied.")));
+
+        mockMvc.perform(post("/api/storage/delete")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[\"a.pdf\", \"b.pdf\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted[0]").value("a.pdf"))
+                .andExpect(jsonPath("$.failed['b.pdf']").value("Access Denied."));
+    }
+
     @Test
     public void testFileExistsCheck() throws Exception {
         // Mock the service response
@@ -99,4 +360,9 @@ public class StorageControllerTests {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.exists").value(false));
     }
+
+    private static FileMetadata metadata(long size) {
+        return new FileMetadata("test-file.pdf", MediaType.APPLICATION_PDF_VALUE, size, ETAG,
+                ZonedDateTime.parse("2025-01-01T00:00:00Z"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.example.storage.service;
+
+import com.example.storage.model.FileMetadata;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DiskFileCacheTests {
+
+    private static final byte[] CONTENT = "policy document".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    private SimpleMeterRegistry meterRegistry;
+    private DiskFileCache diskFileCache;
+    private AtomicInteger downloads;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        meterRegistry = new SimpleMeterRegistry();
+        diskFileCache = new DiskFileCache(meterRegistry, true, directory.resolve("cache"),
+                DataSize.ofKilobytes(1), DataSize.ofBytes(512));
+        downloads = new AtomicInteger();
+    }
+
+    @Test
+    void servesAFileWhileCachingItAndRepeatsFromDisk() throws Exception {
+        FileMetadata metadata = metadata("policy.pdf", "etag-1", CONTENT.length);
+
+        // Nothing is cached until the first download has been read to the end
+        InputStream first = diskFileCache.cacheWhileReading(metadata, download());
+        byte[] head = first.readNBytes(6);
+        assertNull(diskFileCache.getIfCached(metadata, CONTENT.length));
+        assertArrayEquals(CONTENT, concat(head, readAndClose(first)));
+
+        Path cached = diskFileCache.getIfCached(metadata, CONTENT.length);
+        assertArrayEquals(CONTENT, Files.readAllBytes(cached));
+        assertEquals(1, downloads.get());
+        assertEquals(CONTENT.length, meterRegistry.counter("storage.disk-cache.bytes.saved").count());
+        // The lookup while the copy was still being written was a miss
+        assertEquals(1, gets("hit"));
+        assertEquals(1, gets("miss"));
+    }
+
+    @Test
+    void concurrentMissesAreStreamedButCachedOnce() throws Exception {
+        FileMetadata metadata = metadata("policy.pdf", "etag-1", CONTENT.length);
+        InputStream filling = diskFileCache.cacheWhileReading(metadata, download());
+        ByteArrayInputStream direct = download();
+
+        // The second download goes straight through while the first is still filling the cache
+        assertSame(direct, diskFileCache.cacheWhileReading(metadata, direct));
+        readAndClose(filling);
+
+        assertArrayEquals(CONTENT, Files.readAllBytes(diskFileCache.getIfCached(metadata, CONTENT.length)));
+    }
+
+    @Test
+    void aChangedEtagIsFetchedAgain() throws Exception {
+        readAndClose(diskFileCache.cacheWhileReading(metadata("policy.pdf", "etag-1", CONTENT.length), download()));
+
+        // The stale copy is not served; the following download caches the new content
+        assertNull(diskFileCache.getIfCached(metadata("policy.pdf", "etag-2", CONTENT.length), 4));
+        readAndClose(diskFileCache.cacheWhileReading(metadata("policy.pdf", "etag-2", CONTENT.length), download()));
+
+        assertNotNull(diskFileCache.getIfCached(metadata("policy.pdf", "etag-2", CONTENT.length), 4));
+        assertNull(diskFileCache.getIfCached(metadata("policy.pdf", "etag-1", CONTENT.length), 4));
+        assertEquals(1, gets("hit"));
+        assertEquals(2, gets("miss"));
+    }
+
+    @Test
+    void deletedAndOversizedFilesAreNotServedFromDisk() throws Exception {
+        readAndClose(diskFileCache.cacheWhileReading(metadata("policy.pdf", "etag-1", CONTENT.length), download()));
+
+        diskFileCache.invalidate("policy.pdf");
+
+        assertNull(diskFileCache.getIfCached(metadata("policy.pdf", "etag-1", CONTENT.length), CONTENT.length));
+        ByteArrayInputStream oversized = download();
+        assertSame(oversized, diskFileCache.cacheWhileReading(metadata("archive.tar", "etag-1", 513), oversized));
+    }
+
+    @Test
+    void truncatedAndAbandonedDownloadsAreNotCached() throws Exception {
+        readAndClose(diskFileCache.cacheWhileReading(metadata("policy.pdf", "etag-1", CONTENT.length + 1), download()));
+        assertNull(diskFileCache.getIfCached(metadata("policy.pdf", "etag-1", CONTENT.length + 1), 1));
+
+        // Closed partway through, such as when the client disconnects
+        FileMetadata metadata = metadata("report.pdf", "etag-1", CONTENT.length);
+        InputStream abandoned = diskFileCache.cacheWhileReading(metadata, download());
+        abandoned.readNBytes(6);
+        abandoned.close();
+        assertNull(diskFileCache.getIfCached(metadata, CONTENT.length));
+        try (Stream<Path> files = Files.list(directory.resolve("cache"))) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private double gets(String result) {
+        return meterRegistry.get("cache.gets").tag("cache", "storage.disk-cache").tag("result", result)
+                .functionCounter().count();
+    }
+
+    private ByteArrayInputStream download() {
+        downloads.incrementAndGet();
+        return new ByteArrayInputStream(CONTENT);
+    }
+
+    private static byte[] readAndClose(InputStream content) throws IOException {
+        try (content) {
+            return content.readAllBytes();
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] joined = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, joined, a.length, b.length);
+        return joined;
+    }
+
+    private static FileMetadata metadata(String filename, String etag, long size) {
+        return new FileMetadata(filename, "application/pdf", size, etag, ZonedDateTime.now());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.storage.service;
+
+import com.example.storage.config.MinioConfig;
+import com.example.storage.config.MultipartMinioClient;
+import com.example.storage.exception.StorageException;
+import com.example.storage.model.UploadedPart;
+import io.minio.messages.Part;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MultipartUploadServiceTests {
+
+    private static final String BUCKET = "arkive-documents";
+
+    private MultipartMinioClient multipartMinioClient;
+    private MultipartUploadService multipartUploadService;
+
+    @BeforeEach
+    void setUp() {
+        multipartMinioClient = mock(MultipartMinioClient.class);
+        MinioConfig minioConfig = mock(MinioConfig.class);
+        when(minioConfig.getBucketName()).thenReturn(BUCKET);
+        multipartUploadService = new MultipartUploadService(multipartMinioClient, minioConfig, mock(StorageService.class),
+                DataSize.ofMegabytes(16), DataSize.ofMegabytes(64), DataSize.ofMegabytes(128), DataSize.ofMegabytes(40));
+    }
+
+    @Test
+    void initiateStartsAnUploadUnderAGeneratedName() throws Exception {
+        when(multipartMinioClient.initiate(eq(BUCKET), anyString(), eq("application/x-tar"))).thenReturn("upload-1");
+
+        var upload = multipartUploadService.initiate("archive.tar", "application/x-tar");
+
+        assertEquals("upload-1", upload.getUploadId());
+        assertEquals(16L << 20, upload.getPartSize());
+        assertEquals(".tar", upload.getFilename().substring(upload.getFilename().lastIndexOf('.')));
+    }
+
+    @Test
+    void uploadPartSendsExactlyTheDeclaredBytes() throws Exception {
+        when(multipartMinioClient.uploadPart(eq(BUCKET), eq("archive.tar"), eq("upload-1"), eq(3), any())).thenReturn("etag-3");
+
+        UploadedPart part = multipartUploadService.uploadPart("archive.tar", "upload-1", 3,
+                new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5}), 4);
+
+        ArgumentCaptor<byte[]> content = ArgumentCaptor.forClass(byte[].class);
+        verify(multipartMinioClient).uploadPart(eq(BUCKET), eq("archive.tar"), eq("upload-1"), eq(3), content.capture());
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, content.getValue());
+        assertEquals(new UploadedPart(3, "etag-3", 4), part);
+    }
+
+    @Test
+    void uploadPartRejectsTruncatedAndOversizedParts() throws Exception {
+        assertThrows(StorageException.class, () -> multipartUploadService.uploadPart("archive.tar", "upload-1", 1,
+                new ByteArrayInputStream(new byte[] {1, 2}), 4));
+        assertThrows(StorageException.class, () -> multipartUploadService.uploadPart("archive.tar", "upload-1", 1,
+                new ByteArrayInputStream(new byte[0]), DataSize.ofMegabytes(65).toBytes()));
+        assertThrows(StorageException.class, () -> multipartUploadService.uploadPart("archive.tar", "upload-1", 0,
+                new ByteArrayInputStream(new byte[] {1}), 1));
+        verify(multipartMinioClient, never()).uploadPart(anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    @Test
+    void completeAssemblesThePartsMinioHasReceived() throws Exception {
+        List<Part> parts = List.of(part(1, "etag-1"), part(2, "etag-2"));
+        when(multipartMinioClient.listParts(BUCKET, "archive.tar", "upload-1")).thenReturn(parts);
+
+        multipartUploadService.complete("archive.tar", "upload-1");
+
+        ArgumentCaptor<Part[]> completed = ArgumentCaptor.forClass(Part[].class);
+        verify(multipartMinioClient).complete(eq(BUCKET), eq("archive.tar"), eq("upload-1"), completed.capture());
+        assertEquals(List.of("etag-1", "etag-2"), Arrays.stream(completed.getValue()).map(Part::etag).toList());
+    }
+
+    @Test
+    void completeRefusesUploadsWithMissingParts() throws Exception {
+        List<Part> parts = List.of(part(1, "etag-1"), part(3, "etag-3"));
+        when(multipartMinioClient.listParts(BUCKET, "archive.tar", "upload-1")).thenReturn(parts);
+
+        StorageException error = assertThrows(StorageException.class,
+                () -> multipartUploadService.complete("archive.tar", "upload-1"));
+        assertEquals("Part 2 is required to complete the upload", error.getMessage());
+        verify(multipartMinioClient, never()).complete(anyString(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void completeDiscardsUploadsLargerThanTheMaximumSize() throws Exception {
+        List<Part> parts = List.of(part(1, "etag-1"), part(2, "etag-2"), part(3, "etag-3"));
+        when(multipartMinioClient.listParts(BUCKET, "archive.tar", "upload-1")).thenReturn(parts);
+
+        StorageException error = assertThrows(StorageException.class,
+                () -> multipartUploadService.complete("archive.tar", "upload-1"));
+        assertEquals("Upload size cannot exceed " + DataSize.ofMegabytes(40), error.getMessage());
+        verify(multipartMinioClient, never()).complete(anyString(), anyString(), anyString(), any());
+        verify(multipartMinioClient).abort(BUCKET, "archive.tar", "upload-1");
+    }
+
+    @Test
+    void uploadPartRejectsPartNumbersNoUploadWithinTheMaximumSizeCanReach() throws Exception {
+        // 40 MB holds at most eight 5 MB parts and a smaller last one
+        assertThrows(StorageException.class, () -> multipartUploadService.uploadPart("archive.tar", "upload-1", 10,
+                new ByteArrayInputStream(new byte[] {1}), 1));
+        verify(multipartMinioClient, never()).uploadPart(anyString(), anyString(), anyString(), anyInt(), any());
+    }
+
+    // Parts as listed by MinIO, which unlike the Part(int, String) constructor carry a size
+    private static Part part(int partNumber, String etag) {
+        Part part = mock(Part.class);
+        when(part.partNumber()).thenReturn(partNumber);
+        when(part.etag()).thenReturn(etag);
+        when(part.partSize()).thenReturn(16L << 20);
+        return part;
+    }
+}
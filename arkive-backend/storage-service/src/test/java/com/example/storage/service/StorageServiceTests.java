@@ -0,0 +1,197 @@
+package com.example.storage.service;
+
+import com.example.storage.config.MinioConfig;
+import com.example.storage.exception.StorageException;
+import io.minio.CopyObjectArgs;
+import io.minio.MinioClient;
+import io.minio.Result;
+import io.minio.messages.DeleteError;
+import com.example.storage.model.BatchDeleteResult;
+import com.example.storage.model.ObjectPage;
+import com.example.storage.model.StoredObject;
+import io.minio.messages.Item;
+import io.minio.PutObjectArgs;
+import io.minio.RemoveObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.StatObjectResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.env.Environment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StorageServiceTests {
+
+    private static final String BUCKET = "arkive-documents";
+    private static final byte[] CONTENT = "policy document".getBytes(StandardCharsets.UTF_8);
+
+    private MinioClient minioClient;
+    private DiskFileCache diskFileCache;
+    private StorageService storageService;
+    private String sha256;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        minioClient = mock(MinioClient.class);
+        MinioConfig minioConfig = mock(MinioConfig.class);
+        when(minioConfig.getBucketName()).thenReturn(BUCKET);
+        diskFileCache = mock(DiskFileCache.class);
+        storageService = new StorageService(minioClient, minioConfig, mock(Environment.class),
+                new FileExistsCache(Duration.ofMinutes(1), 100), diskFileCache);
+        ReflectionTestUtils.setField(storageService, "contentAddressed", true);
+        sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(CONTENT));
+
+        // MinIO reads the whole stream, which is what feeds the digest
+        when(minioClient.putObject(any())).thenAnswer(invocation -> {
+            invocation.<PutObjectArgs>getArgument(0).stream().readAllBytes();
+            return null;
+        });
+    }
+
+    @Test
+    void newContentIsCopiedToItsDigestName() throws Exception {
+        when(minioClient.statObject(any())).thenThrow(new RuntimeException("Object does not exist"));
+
+        String filename = storageService.uploadFile(new ByteArrayInputStream(CONTENT), "policy.pdf", "application/pdf", CONTENT.length);
+
+        assertEquals("sha256-" + sha256 + ".pdf", filename);
+        ArgumentCaptor<PutObjectArgs> put = ArgumentCaptor.forClass(PutObjectArgs.class);
+        verify(minioClient).putObject(put.capture());
+        String tempFilename = put.getValue().object();
+        assertTrue(tempFilename.startsWith(StorageService.TEMP_PREFIX));
+        verify(minioClient).copyObject(argThat(copy -> copy.object().equals(filename) && copy.source().object().equals(tempFilename)));
+        verify(minioClient).removeObject(argThat(remove -> remove.object().equals(tempFilename)));
+    }
+
+    @Test
+    void repeatedContentReusesTheExistingObject() throws Exception {
+        when(minioClient.statObject(argThat((StatObjectArgs stat) -> stat.object().equals("sha256-" + sha256 + ".pdf"))))
+                .thenReturn(mock(StatObjectResponse.class));
+
+        String filename = storageService.uploadFile(new ByteArrayInputStream(CONTENT), "copy.pdf", "application/pdf", CONTENT.length);
+
+        assertEquals("sha256-" + sha256 + ".pdf", filename);
+        verify(minioClient, never()).copyObject(any(CopyObjectArgs.class));
+        verify(minioClient).removeObject(any(RemoveObjectArgs.class));
+    }
+
+    @Test
+    void contentNotMatchingTheDeclaredDigestIsDiscarded() throws Exception {
+        StorageException e = assertThrows(StorageException.class, () -> storageService.uploadFile(
+                new ByteArrayInputStream(CONTENT), "policy.pdf", "application/pdf", CONTENT.length, "0".repeat(64)));
+
+        assertTrue(e.getMessage().contains("does not match"));
+        verify(minioClient, never()).copyObject(any(CopyObjectArgs.class));
+        verify(minioClient).removeObject(argThat(remove -> remove.object().startsWith(StorageService.TEMP_PREFIX)));
+        assertThrows(StorageException.class, () -> storageService.uploadFile(
+                new ByteArrayInputStream(CONTENT), "policy.pdf", "application/pdf", CONTENT.length, "not-a-digest"));
+    }
+
+    @Test
+    void uploadAndItsUrlTakeOneRoundTrip() {
+        ReflectionTestUtils.setField(storageService, "contentAddressed", false);
+
+        String filename = storageService.uploadFile(new ByteArrayInputStream(CONTENT), "policy.pdf", "application/pdf", CONTENT.length);
+        storageService.getFileUrl(filename);
+
+        assertEquals(1, minioRoundTrips());
+    }
+
+    @Test
+    void deleteTakesOneRoundTripAndSucceedsForMissingFiles() throws Exception {
+        assertTrue(storageService.deleteFile("missing.pdf"));
+
+        assertEquals(1, minioRoundTrips());
+        verify(minioClient, never()).statObject(any());
+        verify(diskFileCache).invalidate("missing.pdf");
+    }
+
+    @Test
+    void existenceChecksAreServedFromTheStatCache() throws Exception {
+        StatObjectResponse stored = mock(StatObjectResponse.class);
+        when(minioClient.statObject(any())).thenAnswer(invocation -> {
+            if (invocation.<StatObjectArgs>getArgument(0).object().equals("policy.pdf")) {
+                return stored;
+            }
+            throw new RuntimeException("Object does not exist");
+        });
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(storageService.fileExists("policy.pdf"));
+            assertFalse(storageService.fileExists("missing.pdf"));
+        }
+        assertEquals(2, minioRoundTrips());
+
+        // Deletes through this service are reflected without asking MinIO again
+        storageService.deleteFile("policy.pdf");
+        assertFalse(storageService.fileExists("policy.pdf"));
+        verify(minioClient, times(2)).statObject(any());
+    }
+
+    @Test
+    void batchDeleteRemovesAllFilesInOneRoundTripAndReportsFailures() throws Exception {
+        DeleteError error = mock(DeleteError.class);
+        when(error.objectName()).thenReturn("locked.pdf");
+        when(error.message()).thenReturn("Access Denied.");
+        Result<DeleteError> failure = new Result<>(error);
+        when(minioClient.removeObjects(any())).thenReturn(List.of(failure));
+
+        BatchDeleteResult result = storageService.deleteFiles(List.of("a.pdf", "b.pdf", "locked.pdf", "a.pdf"));
+
+        assertEquals(List.of("a.pdf", "b.pdf"), result.getDeleted());
+        assertEquals(Map.of("locked.pdf", "Access Denied."), result.getFailed());
+        assertEquals(1, minioRoundTrips());
+        assertThrows(StorageException.class, () -> storageService.deleteFiles(Collections.nCopies(1001, "a.pdf")));
+    }
+
+    @Test
+    void listingReturnsOnePageAndWhereTheNextStarts() throws Exception {
+        List<Result<Item>> items = List.of(item("b.pdf"), item("c.pdf"), item("d.pdf"));
+        when(minioClient.listObjects(argThat(list -> list.startAfter().equals("a.pdf") && list.maxKeys() == 2)))
+                .thenReturn(items);
+
+        ObjectPage page = storageService.listFiles("a.pdf", 2);
+
+        assertEquals(List.of("b.pdf", "c.pdf"), page.getObjects().stream().map(StoredObject::getFilename).toList());
+        assertEquals("c.pdf", page.getNextStartAfter());
+        assertEquals(1, minioRoundTrips());
+        assertThrows(StorageException.class, () -> storageService.listFiles(null, 1001));
+    }
+
+    // Presigning is computed locally, every other MinioClient call is a request to MinIO
+    private long minioRoundTrips() {
+        return mockingDetails(minioClient).getInvocations().stream()
+                .filter(invocation -> !invocation.getMethod().getName().equals("getPresignedObjectUrl"))
+                .count();
+    }
+
+    private static Result<Item> item(String filename) {
+        Item item = mock(Item.class);
+        when(item.objectName()).thenReturn(filename);
+        when(item.lastModified()).thenReturn(ZonedDateTime.now());
+        return new Result<>(item);
+    }
+}
@@ -0,0 +1,26 @@
+import { AxiosResponse } from 'axios';
+
+// Largest page the listing endpoints serve (CursorPageRequest.MAX_SIZE)
+const PAGE_SIZE = 500;
+
+export interface PageParams {
+  size: number;
+  cursor?: string;
+}
+
+/**
+ * Listing endpoints return one page at a time along with the nextCursor of the following page.
+ * Requests every page in turn and returns all of their items.
+ */
+export async function fetchAllPages<T = any>(
+  fetchPage: (params: PageParams) => Promise<AxiosResponse>
+): Promise<T[]> {
+  const items: T[] = [];
+  let cursor: string | undefined;
+  do {
+    const response = await fetchPage(cursor ? { size: PAGE_SIZE, cursor } : { size: PAGE_SIZE });
+    items.push(...(response.data?.data || []));
+    cursor = response.data?.nextCursor || undefined;
+  } while (cursor);
+  return items;
+}
@@ -5,6 +5,7 @@ import FileCard from "./fileCard";
 import AddFolderDocumentModal from "./AddFolderDocumentModal";
 import { useState, useEffect, useCallback } from "react";
 import axiosClient from "lib/axios";
+import { fetchAllPages } from "lib/pagination";
 import { DocumentObject } from "types/document";
 
 interface FolderContentProps {
@@ -31,24 +32,22 @@ export default function FolderContent({
       setIsLoading(true);
       setError(null);
       
-      // Call the API endpoint to get documents by folder ID
-      const response = await axiosClient.get(`/documents/folder/${folderId}`);
+      // Call the API endpoint to get documents by folder ID, one page at a time
+      const folderDocuments = await fetchAllPages((params) =>
+        axiosClient.get(`/documents/folder/${folderId}`, { params })
+      );
       
-      if (response.data?.data) {
-        // Transform the API response to match DocumentObject structure
-        const formattedDocuments = response.data.data.map((doc: any) => ({
-          id: doc.id,
-          title: doc.title,
-          owner: doc.ownerName || "Unknown",
-          department: doc.department,
-          document: doc.url,
-          folder_id: doc.folderId
-        }));
-        
-        setDocuments(formattedDocuments);
-      } else {
-        setDocuments([]);
-      }
+      // Transform the API response to match DocumentObject structure
+      const formattedDocuments = folderDocuments.map((doc: any) => ({
+        id: doc.id,
+        title: doc.title,
+        owner: doc.ownerName || "Unknown",
+        department: doc.department,
+        document: doc.url,
+        folder_id: doc.folderId
+      }));
+      
+      setDocuments(formattedDocuments);
     } catch (err: any) {
       console.error("Failed to fetch folder documents:", err);
       setError(err.response?.data?.message || "Failed to fetch folder documents");
@@ -2,6 +2,7 @@ import { useDisclosure } from "@chakra-ui/hooks";
 import { useState, useEffect, useCallback } from "react";
 import { useDocumentStore } from "../stores/document.store";
 import axiosClient from "lib/axios";
+import { fetchAllPages } from "lib/pagination";
 import { useToast } from "@chakra-ui/react";
 import { useAuthStore } from "views/auth/stores/auth.store";
 
@@ -41,15 +42,15 @@ export default function useDocument() {
       
       console.log("User departments:", userDepartments);
       
-      // Use the filter endpoint to get documents without folders
-      const response = await axiosClient.post('/documents/filter', {
-        departments: userDepartments,
-        noFolderId: true
-      });
-      
-      console.log("Documents response:", response.data);
+      // Use the filter endpoint to get documents without folders, one page at a time
+      let documentsData = await fetchAllPages((params) =>
+        axiosClient.post('/documents/filter', {
+          departments: userDepartments,
+          noFolderId: true
+        }, { params })
+      );
       
-      let documentsData = response.data?.data || [];
+      console.log("Documents response:", documentsData);
 
       // Apply additional filters from UI
       if (documentFilters.department) {
@@ -3,6 +3,7 @@ import { useState, useEffect, useCallback, useMemo } from "react";
 import { useFolderStore } from "../stores/folder.store";
 import { FolderObject } from "types/document";
 import axiosClient from "lib/axios";
+import { fetchAllPages } from "lib/pagination";
 import { formatDistanceToNow } from "date-fns";
 import { useToast } from "@chakra-ui/react";
 import { useAuthStore } from "views/auth/stores/auth.store";
@@ -52,22 +53,17 @@ export default function useFolders() {
     setIsLoading(true);
     setError(null);
     try {
-      let response;
+      // Folders are listed one page at a time, following nextCursor
+      const folders = await fetchAllPages((params) =>
+        userDepartments.length > 0
+          // Send departments as an array in request body instead of query params
+          ? axiosClient.post("/folders/filter", {
+              departments: userDepartments
+            }, { params })
+          : axiosClient.get("/folders", { params })
+      );
       
-      if (userDepartments.length > 0) {
-        // Send departments as an array in request body instead of query params
-        response = await axiosClient.post("/folders/filter", {
-          departments: userDepartments
-        });
-      } else {
-        response = await axiosClient.get("/folders");
-      }
-      
-      if (response.data?.data) {
-        setFoldersData(response.data.data);
-      } else {
-        setFoldersData([]);
-      }
+      setFoldersData(folders);
     } catch (err: any) {
       console.error("Error fetching folders:", err);
       setError(err.response?.data?.message || "Failed to fetch folders");